@@ -0,0 +1,48 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib;
+
+import android.net.Uri;
+
+import org.khronos.openxr.runtime_broker.utils.BrokerContract;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of parsing broker URIs, as done at the start of every query.
+ * <p>
+ * Each operation parses a freshly built Uri, like a query arriving over binder.
+ */
+@State(Scope.Benchmark)
+public class BrokerUriParserBenchmark {
+    private static final String abi = "arm64-v8a";
+
+    private BrokerUriParser parser;
+    private String activeRuntimeUri;
+    private String functionsUri;
+
+    @Setup
+    public void setUp() {
+        parser = new RuntimeBrokerUriParser(new String[]{abi});
+        activeRuntimeUri = BrokerContract.ActiveRuntime.makeContentUri(
+                BrokerContract.BrokerType.RuntimeBroker, 1, abi).toString();
+        functionsUri = BrokerContract.Functions.makeContentUri(
+                BrokerContract.BrokerType.RuntimeBroker, 1, "org.khronos.example", abi).toString();
+        if (parser.parse(Uri.parse(activeRuntimeUri)) == null
+                || parser.parse(Uri.parse(functionsUri)) == null) {
+            throw new IllegalStateException("Benchmark URIs do not parse");
+        }
+    }
+
+    @Benchmark
+    public ParsedBrokerUri parseActiveRuntimeItem() {
+        return parser.parse(Uri.parse(activeRuntimeUri));
+    }
+
+    @Benchmark
+    public ParsedBrokerUri parseFunctionsDir() {
+        return parser.parse(Uri.parse(functionsUri));
+    }
+}
@@ -0,0 +1,75 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib;
+
+import android.database.Cursor;
+
+import org.khronos.openxr.runtime_broker.utils.BrokerContract;
+import org.khronos.openxr.runtime_broker.utils.RuntimeData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cost of building the cursors returned by the /active and /functions URIs.
+ */
+@State(Scope.Benchmark)
+public class CursorBuilderBenchmark {
+    /**
+     * The projection used by the OpenXR loader for the /active URI.
+     */
+    private static final String[] activeRuntimeProjection = new String[]{
+            BrokerContract.ActiveRuntime.Columns.PACKAGE_NAME,
+            BrokerContract.ActiveRuntime.Columns.NATIVE_LIB_DIR,
+            BrokerContract.ActiveRuntime.Columns.SO_FILENAME,
+            BrokerContract.ActiveRuntime.Columns.HAS_FUNCTIONS,
+    };
+    /**
+     * The projection used by the OpenXR loader for the /functions URI.
+     */
+    private static final String[] functionsProjection = new String[]{
+            BrokerContract.Functions.Columns.FUNCTION_NAME,
+            BrokerContract.Functions.Columns.SYMBOL_NAME,
+    };
+
+    @Param({"0", "10", "200"})
+    public int functionCount;
+
+    private RuntimeData runtime;
+
+    @Setup
+    public void setUp() {
+        Map<String, String> functions = new HashMap<>();
+        for (int i = 0; i < functionCount; ++i) {
+            functions.put("xrExampleFunction" + i, "example_xrExampleFunction" + i);
+        }
+        runtime = new RuntimeData("org.khronos.example",
+                "/data/app/org.khronos.example/lib/arm64",
+                "libopenxr_example.so",
+                1,
+                functions,
+                BrokerContract.BrokerType.RuntimeBroker);
+    }
+
+    @Benchmark
+    public Cursor activeRuntime() {
+        // Loaders send a new projection array with every query.
+        ActiveRuntimeCursorBuilder builder =
+                new ActiveRuntimeCursorBuilder(null, activeRuntimeProjection.clone());
+        builder.addRow(0, runtime);
+        return builder.getCursor();
+    }
+
+    @Benchmark
+    public Cursor functions() {
+        RuntimeFunctionsCursorBuilder builder =
+                new RuntimeFunctionsCursorBuilder(runtime, functionsProjection.clone());
+        builder.addAllRows();
+        return builder.getCursor();
+    }
+}
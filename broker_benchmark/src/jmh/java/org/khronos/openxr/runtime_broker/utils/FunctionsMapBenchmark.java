@@ -0,0 +1,71 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker.utils;
+
+import android.os.Bundle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Cost of extracting the functions map from a runtime service's metadata Bundle.
+ */
+@State(Scope.Benchmark)
+public class FunctionsMapBenchmark {
+    private static final String prefix = "org.khronos.openxr.OpenXRRuntime.Functions.";
+    private static final Pattern functionNameRegex = Pattern.compile("xr[A-Z]([a-z0-9]*)([0-9A-Z]([a-z0-9]*))*");
+
+    /**
+     * Number of function entries. The Bundle also holds as many invalid and unrelated keys.
+     */
+    @Param({"10", "1000"})
+    public int functionCount;
+
+    private final Bundle bundle = new Bundle();
+
+    @Setup
+    public void setUp() {
+        bundle.putString("org.khronos.openxr.OpenXRRuntime.SoFilename", "libopenxr_example.so");
+        bundle.putInt("org.khronos.openxr.OpenXRRuntime.MajorVersion", 1);
+        for (int i = 0; i < functionCount; ++i) {
+            bundle.putString(prefix + "xrExampleFunction" + i, "example_xrExampleFunction" + i);
+            // Keys that must be rejected
+            bundle.putString(prefix + "xrexample_" + i, "ignored");
+            bundle.putString("com.example.unrelated.Key" + i, "ignored");
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> getFunctionsMap() {
+        return RuntimeData.getFunctionsMap(bundle);
+    }
+
+    /**
+     * The previous implementation, matching each function name with a regex, for comparison.
+     */
+    @Benchmark
+    public Map<String, String> getFunctionsMapWithRegex() {
+        HashMap<String, String> functions = new HashMap<>();
+        for (String key : bundle.keySet()) {
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+            String function = key.substring(prefix.length());
+            if (!functionNameRegex.matcher(function).matches()) {
+                continue;
+            }
+            Object symbol = bundle.get(key);
+            if (symbol instanceof String && !((String) symbol).isEmpty()) {
+                functions.putIfAbsent(function, (String) symbol);
+            }
+        }
+        return functions;
+    }
+}
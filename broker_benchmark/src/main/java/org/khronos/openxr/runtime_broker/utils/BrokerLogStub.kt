@@ -0,0 +1,30 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker.utils
+
+/**
+ * Stands in for the utils BrokerLog off-device, where Log.isLoggable() is not available: every
+ * level is disabled, so messages are never built.
+ */
+object BrokerLog {
+    @JvmStatic
+    fun isLoggable(tag: String, level: Int): Boolean = false
+
+    inline fun v(tag: String, message: () -> String) {
+    }
+
+    inline fun d(tag: String, message: () -> String) {
+    }
+
+    inline fun i(tag: String, message: () -> String) {
+    }
+
+    inline fun w(tag: String, message: () -> String) {
+    }
+
+    inline fun w(tag: String, throwable: Throwable, message: () -> String) {
+    }
+
+    inline fun e(tag: String, message: () -> String) {
+    }
+}
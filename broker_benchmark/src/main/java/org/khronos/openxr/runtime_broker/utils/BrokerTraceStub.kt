@@ -0,0 +1,30 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker.utils
+
+/**
+ * Stands in for the utils BrokerTrace off-device, where android.os.Trace is not available: no
+ * sections or counters are recorded.
+ *
+ * Only declares the names used by the benchmarked sources.
+ */
+object BrokerTrace {
+    const val PARSE_METADATA = "OpenXRBroker.parseMetadata"
+
+    @JvmStatic
+    fun beginSection(name: String) {
+    }
+
+    @JvmStatic
+    fun endSection() {
+    }
+
+    inline fun <T> section(name: String, block: () -> T): T = block()
+
+    @JvmStatic
+    fun isCounterEnabled(): Boolean = false
+
+    @JvmStatic
+    fun setCounter(name: String, value: Long) {
+    }
+}
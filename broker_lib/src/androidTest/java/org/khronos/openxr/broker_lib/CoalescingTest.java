@@ -0,0 +1,92 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+import org.khronos.openxr.runtime_broker.utils.BrokerContract;
+import org.khronos.openxr.runtime_broker.utils.RuntimeChooser;
+import org.khronos.openxr.runtime_broker.utils.RuntimeData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Many concurrent cold queries, as when many apps start at once, share one chooser call per
+ * lookup.
+ */
+public class CoalescingTest {
+    private static final long lookupMillis = 100;
+    private static final int majorVersions = 4;
+    private static final int threads = 32;
+    private static final String[] projection = new String[]{
+            BrokerContract.ActiveRuntime.Columns.PACKAGE_NAME,
+    };
+
+    /**
+     * A slow chooser that counts calls per major version.
+     */
+    private static final class CountingChooser implements RuntimeChooser {
+        final AtomicIntegerArray calls = new AtomicIntegerArray(majorVersions + 1);
+
+        @Nullable
+        @Override
+        public RuntimeData getActiveRuntime(@NonNull Context context, int majorVersion, @NonNull String abi) {
+            calls.incrementAndGet(majorVersion);
+            SystemClock.sleep(lookupMillis);
+            return new RuntimeData("org.khronos.example", "/data/app/example/lib/" + abi,
+                    "libopenxr_example.so", majorVersion, Collections.emptyMap(),
+                    BrokerContract.BrokerType.RuntimeBroker);
+        }
+    }
+
+    @Test
+    public void concurrentColdQueriesShareOneLookup() throws Exception {
+        CountingChooser chooser = new CountingChooser();
+        TestBroker broker = TestBroker.create(chooser, false);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>(threads);
+            for (int i = 0; i < threads; ++i) {
+                int majorVersion = 1 + i % majorVersions;
+                results.add(executor.submit(() -> {
+                    Uri uri = BrokerContract.ActiveRuntime.makeContentUri(
+                            BrokerContract.BrokerType.RuntimeBroker, majorVersion,
+                            Build.SUPPORTED_ABIS[0]);
+                    start.await();
+                    try (Cursor cursor = broker.query(uri, projection, null, null, null)) {
+                        assertThat(cursor).isNotNull();
+                        assertThat(cursor.moveToFirst()).isTrue();
+                        return cursor.getString(0);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get()).isEqualTo("org.khronos.example");
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int majorVersion = 1; majorVersion <= majorVersions; ++majorVersion) {
+            assertThat(chooser.calls.get(majorVersion)).isEqualTo(1);
+        }
+    }
+}
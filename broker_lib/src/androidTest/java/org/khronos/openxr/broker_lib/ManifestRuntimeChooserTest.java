@@ -0,0 +1,146 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.khronos.openxr.runtime_broker.utils.BrokerContract;
+import org.khronos.openxr.runtime_broker.utils.RuntimeData;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ManifestRuntimeChooserTest {
+    private Context context;
+    private File directory;
+    private File manifest;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        directory = new File(context.getCacheDir(), "ManifestRuntimeChooserTest");
+        assertThat(directory.isDirectory() || directory.mkdirs()).isTrue();
+        manifest = new File(directory, "active_runtime.json");
+    }
+
+    @After
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        manifest.delete();
+    }
+
+    private void writeManifest(String json) throws IOException {
+        try (FileOutputStream stream = new FileOutputStream(manifest)) {
+            stream.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void missingManifest() {
+        ManifestRuntimeChooser chooser = new ManifestRuntimeChooser(manifest);
+        assertThat(chooser.getActiveRuntime(context, 1, "arm64-v8a")).isNull();
+    }
+
+    @Test
+    public void invalidManifest() throws IOException {
+        writeManifest("{\"file_format_version\": \"1.0.0\", \"runtime\": {}}");
+        ManifestRuntimeChooser chooser = new ManifestRuntimeChooser(manifest);
+        assertThat(chooser.getActiveRuntime(context, 1, "arm64-v8a")).isNull();
+    }
+
+    @Test
+    public void desktopLayout() throws IOException {
+        writeManifest("{\n" +
+                "  \"file_format_version\": \"1.0.0\",\n" +
+                "  \"runtime\": {\n" +
+                "    \"library_path\": \"lib/libopenxr_oem.so\",\n" +
+                "    \"functions\": {\n" +
+                "      \"xrNegotiateLoaderRuntimeInterface\": \"oem_xrNegotiateLoaderRuntimeInterface\"\n" +
+                "    }\n" +
+                "  }\n" +
+                "}\n");
+        ManifestRuntimeChooser chooser = new ManifestRuntimeChooser(manifest);
+        RuntimeData runtime = chooser.getActiveRuntime(context, 1, "arm64-v8a");
+        assertThat(runtime).isNotNull();
+        assertThat(runtime.packageName).isEmpty();
+        assertThat(runtime.nativeLibraryDir).isEqualTo(new File(directory, "lib").getAbsolutePath());
+        assertThat(runtime.soFilename).isEqualTo("libopenxr_oem.so");
+        assertThat(runtime.majorVersion).isEqualTo(1L);
+        assertThat(runtime.functions).containsExactly(
+                "xrNegotiateLoaderRuntimeInterface", "oem_xrNegotiateLoaderRuntimeInterface");
+        assertThat(runtime.brokerType).isEqualTo(BrokerContract.BrokerType.SystemRuntimeBroker);
+
+        // Only major version 1 is provided.
+        assertThat(chooser.getActiveRuntime(context, 2, "arm64-v8a")).isNull();
+    }
+
+    @Test
+    public void perAbiRuntimes() throws IOException {
+        writeManifest("{\n" +
+                "  \"file_format_version\": \"1.0.0\",\n" +
+                "  \"runtimes\": [\n" +
+                "    {\"library_path\": \"/vendor/lib64/libopenxr_oem.so\", \"abi\": \"arm64-v8a\",\n" +
+                "     \"package_name\": \"com.example.oem.openxr\"},\n" +
+                "    {\"library_path\": \"/vendor/lib/libopenxr_oem.so\",\n" +
+                "     \"package_name\": \"com.example.oem.openxr\"}\n" +
+                "  ]\n" +
+                "}\n");
+        ManifestRuntimeChooser chooser = new ManifestRuntimeChooser(manifest);
+
+        RuntimeData arm64 = chooser.getActiveRuntime(context, 1, "arm64-v8a");
+        assertThat(arm64).isNotNull();
+        assertThat(arm64.packageName).isEqualTo("com.example.oem.openxr");
+        assertThat(arm64.nativeLibraryDir).isEqualTo("/vendor/lib64");
+
+        // No runtime for this ABI, so the one without an ABI is used.
+        RuntimeData arm = chooser.getActiveRuntime(context, 1, "armeabi-v7a");
+        assertThat(arm).isNotNull();
+        assertThat(arm.nativeLibraryDir).isEqualTo("/vendor/lib");
+    }
+
+    @Test
+    public void reloadsWhenModified() throws IOException {
+        writeManifest("{\"runtime\": {\"library_path\": \"/vendor/lib64/libold.so\"}}");
+        ManifestRuntimeChooser chooser = new ManifestRuntimeChooser(manifest);
+        long generation = RuntimeCacheGeneration.getCurrent();
+        RuntimeData first = chooser.getActiveRuntime(context, 1, "arm64-v8a");
+        assertThat(first).isNotNull();
+        assertThat(first.soFilename).isEqualTo("libold.so");
+
+        // Parsed once: unchanged file, same object, and nothing cached is stale.
+        assertThat(chooser.getActiveRuntime(context, 1, "arm64-v8a")).isSameInstanceAs(first);
+        assertThat(RuntimeCacheGeneration.getCurrent()).isEqualTo(generation);
+
+        long lastModified = manifest.lastModified();
+        writeManifest("{\"runtime\": {\"library_path\": \"/vendor/lib64/libnew.so\"}}");
+        // Make sure the change is visible with coarse file system timestamps.
+        assertThat(manifest.setLastModified(lastModified + 2000)).isTrue();
+        RuntimeData second = chooser.getActiveRuntime(context, 1, "arm64-v8a");
+        assertThat(second).isNotNull();
+        assertThat(second.soFilename).isEqualTo("libnew.so");
+        assertThat(RuntimeCacheGeneration.getCurrent()).isGreaterThan(generation);
+    }
+
+    @Test
+    public void answersExpireAtCheckInterval() throws IOException {
+        writeManifest("{\"runtime\": {\"library_path\": \"/vendor/lib64/libopenxr_oem.so\"}}");
+        ManifestRuntimeChooser chooser = new ManifestRuntimeChooser(manifest,
+                BrokerContract.BrokerType.SystemRuntimeBroker, 500);
+
+        long[] lifetimes = new long[2];
+        RuntimeData[] runtimes = chooser.getExpiringRuntimes(context, new int[]{1, 2},
+                new String[]{"arm64-v8a"}, lifetimes);
+        assertThat(runtimes[0]).isNotNull();
+        assertThat(runtimes[1]).isNull();
+        assertThat(lifetimes).asList().containsExactly(500L, 500L);
+    }
+}
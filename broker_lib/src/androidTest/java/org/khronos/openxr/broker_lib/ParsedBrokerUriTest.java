@@ -62,6 +62,83 @@ public class ParsedBrokerUriTest {
         }
     }
 
+    @Test
+    public void parseFunctionsItem() {
+        BrokerUriParser parser = new RuntimeBrokerUriParser(new String[]{"arm64-v8a"});
+        Uri uri = Uri.parse("content://" + BrokerContract.AUTHORITY
+                + "/openxr/1/abi/arm64-v8a/runtimes/" + packageName + "/functions/3");
+        ParsedBrokerUri functionsItem = parser.parse(uri);
+        assertThat(functionsItem).isNotNull();
+        assertThat(functionsItem.tableType).isEqualTo(TableType.Functions);
+        assertThat(functionsItem.isDir()).isFalse();
+        assertThat(functionsItem.row).isEqualTo(3);
+        assertThat(functionsItem.packageName).isEqualTo(packageName);
+        assertThat(functionsItem.abi).isEqualTo("arm64-v8a");
+        assertContents(functionsItem);
+    }
+
+    @Test
+    public void parseStats() {
+        BrokerUriParser parser = new SystemRuntimeBrokerUriParser();
+        Uri statsUri = BrokerContract.Stats.makeContentUri(
+                BrokerContract.BrokerType.SystemRuntimeBroker);
+        ParsedBrokerUri stats = parser.parse(statsUri);
+        assertThat(stats).isNotNull();
+        assertThat(stats.tableType).isEqualTo(TableType.Stats);
+        assertThat(stats.brokerType).isEqualTo(BrokerContract.BrokerType.SystemRuntimeBroker);
+        assertThat(stats.isDir()).isTrue();
+        assertThat(stats.packageName).isNull();
+
+        // make sure we check that the authority matters.
+        Truth.assertThat((new RuntimeBrokerUriParser()).parse(statsUri)).isNull();
+    }
+
+    @Test
+    public void parseBulkActiveRuntime() {
+        BrokerUriParser parser = new RuntimeBrokerUriParser();
+        Uri bulkUri = BrokerContract.BulkActiveRuntime.makeContentUri(
+                BrokerContract.BrokerType.RuntimeBroker,
+                new int[]{majorVer, 2}, new String[]{"arm64-v8a", "armeabi-v7a"});
+        ParsedBrokerUri bulk = parser.parse(bulkUri);
+        assertThat(bulk).isNotNull();
+        assertThat(bulk.tableType).isEqualTo(TableType.BulkActiveRuntime);
+        assertThat(bulk.isDir()).isTrue();
+        assertThat(bulk.packageName).isNull();
+        assertThat(bulkUri.getQueryParameters(BrokerContract.BulkActiveRuntime.QUERY_MAJOR_VERSION))
+                .containsExactly("1", "2").inOrder();
+        assertThat(bulkUri.getQueryParameters(BrokerContract.BulkActiveRuntime.QUERY_ABI))
+                .containsExactly("arm64-v8a", "armeabi-v7a").inOrder();
+    }
+
+    @Test
+    public void reject() {
+        BrokerUriParser parser = new RuntimeBrokerUriParser();
+        String base = "content://" + BrokerContract.AUTHORITY;
+        String[] badPaths = new String[]{
+                "",
+                "/openxr",
+                "/openxr/stats/0",
+                "/openxr/1/stats",
+                "/openxr/runtimes",
+                "/openxr/runtimes/active/0",
+                "/openxr/one/abi/x86/runtimes/active",
+                "/openxr/99999999999/abi/x86/runtimes/active",
+                "/openxr/1/ABI/x86/runtimes/active",
+                "/openxr/1/abi//runtimes/active",
+                "/openxr/1/abi/x86/runtime/active",
+                "/openxr/1/abi/x86/runtimes/active/0/1",
+                "/openxr/1/abi/x86/runtimes/active/first",
+                "/openxr/1/abi/x86/runtimes/active/functions",
+                "/openxr/1/abi/x86/runtimes/" + packageName,
+                "/openxr/1/abi/x86/runtimes/" + packageName + "/symbols",
+        };
+        for (String path : badPaths) {
+            Truth.assertWithMessage(path).that(parser.parse(Uri.parse(base + path))).isNull();
+        }
+        Truth.assertThat(parser.parse(Uri.parse("file://" + BrokerContract.AUTHORITY
+                + "/openxr/1/abi/x86/runtimes/active"))).isNull();
+    }
+
     private void assertContents(@NonNull ParsedBrokerUri parsedBrokerUri) {
         if (parsedBrokerUri.tableType == TableType.ActiveRuntime) {
             Truth.assertThat(parsedBrokerUri.packageName).isNull();
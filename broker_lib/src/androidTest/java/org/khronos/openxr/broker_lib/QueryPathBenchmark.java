@@ -0,0 +1,76 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.khronos.openxr.runtime_broker.utils.BrokerContract;
+import org.khronos.openxr.runtime_broker.utils.BrokerLog;
+import org.khronos.openxr.runtime_broker.utils.RuntimeChooser;
+import org.khronos.openxr.runtime_broker.utils.RuntimeData;
+
+import java.util.Collections;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Steady-state cost of an active runtime query, answered from the broker's cache.
+ * <p>
+ * With the default log levels, the query path only checks that its debug messages are disabled,
+ * and formats none of them: {@link QueryPathLoggingTest} checks this against a run with logging
+ * forced on.
+ */
+public class QueryPathBenchmark {
+    private static final String[] projection = new String[]{
+            BrokerContract.ActiveRuntime.Columns.PACKAGE_NAME,
+            BrokerContract.ActiveRuntime.Columns.NATIVE_LIB_DIR,
+            BrokerContract.ActiveRuntime.Columns.SO_FILENAME,
+            BrokerContract.ActiveRuntime.Columns.HAS_FUNCTIONS,
+    };
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private static final class FixedChooser implements RuntimeChooser {
+        @Nullable
+        @Override
+        public RuntimeData getActiveRuntime(@NonNull Context context, int majorVersion, @NonNull String abi) {
+            return new RuntimeData("org.khronos.example", "/data/app/example/lib/" + abi,
+                    "libopenxr_example.so", majorVersion, Collections.emptyMap(),
+                    BrokerContract.BrokerType.RuntimeBroker);
+        }
+    }
+
+    @Test
+    public void cachedActiveRuntime() {
+        // Otherwise this measures message formatting too.
+        assertThat(BrokerLog.isLoggable("AbstractRuntimeBroker", Log.DEBUG)).isFalse();
+
+        TestBroker broker = TestBroker.create(new FixedChooser(), false);
+        Uri uri = BrokerContract.ActiveRuntime.makeContentUri(
+                BrokerContract.BrokerType.RuntimeBroker, 1, Build.SUPPORTED_ABIS[0]);
+        try (Cursor cursor = broker.query(uri, projection.clone(), null, null, null)) {
+            assertThat(cursor).isNotNull();
+            assertThat(cursor.moveToFirst()).isTrue();
+        }
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            // Loaders send a new projection array with every query.
+            Cursor cursor = broker.query(uri, projection.clone(), null, null, null);
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+}
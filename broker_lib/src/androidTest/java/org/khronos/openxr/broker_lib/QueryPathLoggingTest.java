@@ -0,0 +1,98 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Test;
+import org.khronos.openxr.runtime_broker.utils.BrokerContract;
+import org.khronos.openxr.runtime_broker.utils.BrokerLog;
+import org.khronos.openxr.runtime_broker.utils.RuntimeChooser;
+import org.khronos.openxr.runtime_broker.utils.RuntimeData;
+
+import java.util.Collections;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+/**
+ * The cached query path formats no log messages with the default log levels: it allocates less
+ * than the same queries with every level forced on.
+ */
+public class QueryPathLoggingTest {
+    private static final int queries = 100;
+    private static final String[] projection = new String[]{
+            BrokerContract.ActiveRuntime.Columns.PACKAGE_NAME,
+            BrokerContract.ActiveRuntime.Columns.NATIVE_LIB_DIR,
+            BrokerContract.ActiveRuntime.Columns.SO_FILENAME,
+            BrokerContract.ActiveRuntime.Columns.HAS_FUNCTIONS,
+    };
+
+    private static final class FixedChooser implements RuntimeChooser {
+        @Nullable
+        @Override
+        public RuntimeData getActiveRuntime(@NonNull Context context, int majorVersion, @NonNull String abi) {
+            return new RuntimeData("org.khronos.example", "/data/app/example/lib/" + abi,
+                    "libopenxr_example.so", majorVersion, Collections.emptyMap(),
+                    BrokerContract.BrokerType.RuntimeBroker);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        BrokerLog.setForceLoggable(false);
+    }
+
+    /**
+     * Run the cached queries on this thread, and count what they allocate.
+     */
+    @SuppressWarnings("deprecation")
+    private static int countQueryAllocations(TestBroker broker, Uri uri) {
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        try {
+            for (int i = 0; i < queries; ++i) {
+                Cursor cursor = broker.query(uri, projection.clone(), null, null, null);
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+            return Debug.getThreadAllocCount();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    @Test
+    public void cachedQueryFormatsNoMessages() {
+        // Otherwise both runs format messages.
+        assertThat(BrokerLog.isLoggable("AbstractRuntimeBroker", Log.DEBUG)).isFalse();
+
+        TestBroker broker = TestBroker.create(new FixedChooser(), false);
+        Uri uri = BrokerContract.ActiveRuntime.makeContentUri(
+                BrokerContract.BrokerType.RuntimeBroker, 1, Build.SUPPORTED_ABIS[0]);
+        try (Cursor cursor = broker.query(uri, projection.clone(), null, null, null)) {
+            assertThat(cursor).isNotNull();
+        }
+        // Once more, so that both measured runs start warm.
+        countQueryAllocations(broker, uri);
+
+        int disabled = countQueryAllocations(broker, uri);
+        BrokerLog.setForceLoggable(true);
+        int forced = countQueryAllocations(broker, uri);
+
+        assertWithMessage("Allocations for %s cached queries, logging disabled (%s) vs forced on (%s)",
+                queries, disabled, forced)
+                .that(disabled)
+                .isLessThan(forced);
+    }
+}
@@ -0,0 +1,179 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.khronos.openxr.runtime_broker.utils.BrokerContract;
+import org.khronos.openxr.runtime_broker.utils.RuntimeChooser;
+import org.khronos.openxr.runtime_broker.utils.RuntimeData;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class RuntimeChooserChainTest {
+    private static final long ttlMillis = 1000;
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private long now = 0;
+
+    /**
+     * A chooser that counts calls, and returns a fixed runtime (or nothing).
+     */
+    private static final class FixedChooser implements RuntimeChooser {
+        final AtomicInteger calls = new AtomicInteger();
+        @Nullable
+        RuntimeData runtime;
+
+        FixedChooser(@Nullable String packageName) {
+            if (packageName != null) {
+                runtime = new RuntimeData(packageName, "/data/app/" + packageName + "/lib",
+                        "libopenxr.so", 1, Collections.emptyMap(),
+                        BrokerContract.BrokerType.RuntimeBroker);
+            }
+        }
+
+        @Nullable
+        @Override
+        public RuntimeData getActiveRuntime(@NonNull Context context, int majorVersion, @NonNull String abi) {
+            calls.incrementAndGet();
+            return runtime;
+        }
+    }
+
+    private RuntimeChooserChain makeChain(RuntimeChooser selection, RuntimeChooser remote, RuntimeChooser fallback) {
+        return new RuntimeChooserChain(Arrays.asList(
+                new RuntimeChooserChain.Link(selection),
+                new RuntimeChooserChain.Link(remote, ttlMillis),
+                new RuntimeChooserChain.Link(fallback)), () -> now);
+    }
+
+    @Test
+    public void firstFoundWins() {
+        FixedChooser selection = new FixedChooser("org.khronos.selected");
+        FixedChooser remote = new FixedChooser("org.khronos.system");
+        FixedChooser fallback = new FixedChooser("org.khronos.newest");
+        RuntimeChooserChain chain = makeChain(selection, remote, fallback);
+
+        RuntimeData runtime = chain.getActiveRuntime(context, 1, "arm64-v8a");
+        assertThat(runtime).isNotNull();
+        assertThat(runtime.packageName).isEqualTo("org.khronos.selected");
+        assertThat(remote.calls.get()).isEqualTo(0);
+        assertThat(fallback.calls.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void notFoundIsRememberedUntilTtl() {
+        FixedChooser selection = new FixedChooser(null);
+        FixedChooser remote = new FixedChooser(null);
+        FixedChooser fallback = new FixedChooser("org.khronos.newest");
+        RuntimeChooserChain chain = makeChain(selection, remote, fallback);
+
+        for (int i = 0; i < 3; ++i) {
+            RuntimeData runtime = chain.getActiveRuntime(context, 1, "arm64-v8a");
+            assertThat(runtime).isNotNull();
+            assertThat(runtime.packageName).isEqualTo("org.khronos.newest");
+        }
+        // Links without a TTL are always asked; the remote link only once.
+        assertThat(selection.calls.get()).isEqualTo(3);
+        assertThat(remote.calls.get()).isEqualTo(1);
+        assertThat(fallback.calls.get()).isEqualTo(3);
+
+        // Other lookups are remembered separately.
+        chain.getActiveRuntime(context, 1, "x86_64");
+        assertThat(remote.calls.get()).isEqualTo(2);
+
+        now += ttlMillis;
+        chain.getActiveRuntime(context, 1, "arm64-v8a");
+        assertThat(remote.calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void notFoundIsForgottenOnInvalidation() {
+        FixedChooser remote = new FixedChooser(null);
+        RuntimeChooserChain chain = makeChain(new FixedChooser(null), remote, new FixedChooser(null));
+
+        assertThat(chain.getActiveRuntime(context, 1, "arm64-v8a")).isNull();
+        assertThat(chain.getActiveRuntime(context, 1, "arm64-v8a")).isNull();
+        assertThat(remote.calls.get()).isEqualTo(1);
+
+        RuntimeCacheGeneration.invalidate();
+        remote.runtime = new FixedChooser("org.khronos.system").runtime;
+        RuntimeData runtime = chain.getActiveRuntime(context, 1, "arm64-v8a");
+        assertThat(runtime).isNotNull();
+        assertThat(runtime.packageName).isEqualTo("org.khronos.system");
+    }
+
+    @Test
+    public void batchAsksEachLinkOnce() {
+        FixedChooser selection = new FixedChooser(null);
+        FixedChooser remote = new FixedChooser("org.khronos.system");
+        FixedChooser fallback = new FixedChooser("org.khronos.newest");
+        RuntimeChooserChain chain = makeChain(selection, remote, fallback);
+
+        RuntimeData[] runtimes = chain.getActiveRuntimes(context, new int[]{1},
+                new String[]{"arm64-v8a", "armeabi-v7a"});
+        assertThat(runtimes).hasLength(2);
+        for (RuntimeData runtime : runtimes) {
+            assertThat(runtime).isNotNull();
+            assertThat(runtime.packageName).isEqualTo("org.khronos.system");
+        }
+        // The default batch implementation asks once per combination.
+        assertThat(selection.calls.get()).isEqualTo(2);
+        assertThat(remote.calls.get()).isEqualTo(2);
+        assertThat(fallback.calls.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void answerAfterTtlLinkExpiresWithIt() {
+        FixedChooser remote = new FixedChooser(null);
+        RuntimeChooserChain chain = makeChain(new FixedChooser(null), remote,
+                new FixedChooser("org.khronos.newest"));
+
+        long[] lifetimes = new long[1];
+        chain.getExpiringRuntimes(context, new int[]{1}, new String[]{"arm64-v8a"}, lifetimes);
+        assertThat(lifetimes[0]).isEqualTo(ttlMillis);
+
+        // A remembered not-found only holds for the rest of its TTL.
+        now += 400;
+        chain.getExpiringRuntimes(context, new int[]{1}, new String[]{"arm64-v8a"}, lifetimes);
+        assertThat(remote.calls.get()).isEqualTo(1);
+        assertThat(lifetimes[0]).isEqualTo(ttlMillis - 400);
+    }
+
+    @Test
+    public void answerBeforeTtlLinkDoesNotExpire() {
+        RuntimeChooserChain chain = makeChain(new FixedChooser("org.khronos.selected"),
+                new FixedChooser(null), new FixedChooser(null));
+
+        long[] lifetimes = new long[1];
+        RuntimeData[] runtimes = chain.getExpiringRuntimes(context, new int[]{1},
+                new String[]{"arm64-v8a"}, lifetimes);
+        assertThat(runtimes[0]).isNotNull();
+        assertThat(lifetimes[0]).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void linkFailuresAreReported() {
+        RuntimeChooser throwing = (ctx, majorVersion, abi) -> {
+            throw new IllegalStateException("broken link");
+        };
+        AtomicInteger failedLink = new AtomicInteger(-1);
+        RuntimeChooserChain chain = new RuntimeChooserChain(Arrays.asList(
+                new RuntimeChooserChain.Link(throwing),
+                new RuntimeChooserChain.Link(new FixedChooser("org.khronos.newest"))),
+                () -> now, (link, exception) -> failedLink.set(link));
+
+        RuntimeData runtime = chain.getActiveRuntime(context, 1, "arm64-v8a");
+        assertThat(runtime).isNotNull();
+        assertThat(runtime.packageName).isEqualTo("org.khronos.newest");
+        assertThat(failedLink.get()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,57 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib;
+
+import android.content.pm.ProviderInfo;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.khronos.openxr.runtime_broker.utils.BrokerContract;
+import org.khronos.openxr.runtime_broker.utils.RuntimeChooser;
+
+/**
+ * A runtime broker with a test chooser, attached to the test application context.
+ */
+final class TestBroker extends AbstractRuntimeBroker {
+    private final RuntimeChooser runtimeChooser;
+    private final boolean warmUpOnCreate;
+    private final BrokerUriParser parser = new RuntimeBrokerUriParser();
+
+    private TestBroker(RuntimeChooser runtimeChooser, boolean warmUpOnCreate) {
+        this.runtimeChooser = runtimeChooser;
+        this.warmUpOnCreate = warmUpOnCreate;
+    }
+
+    /**
+     * Create a broker and call its onCreate().
+     *
+     * @param runtimeChooser the chooser to use.
+     * @param warmUpOnCreate whether to start warm-up in onCreate().
+     */
+    static TestBroker create(RuntimeChooser runtimeChooser, boolean warmUpOnCreate) {
+        TestBroker broker = new TestBroker(runtimeChooser, warmUpOnCreate);
+        ProviderInfo info = new ProviderInfo();
+        info.authority = BrokerContract.AUTHORITY;
+        // Calls onCreate()
+        broker.attachInfo(ApplicationProvider.getApplicationContext(), info);
+        return broker;
+    }
+
+    @NonNull
+    @Override
+    protected RuntimeChooser getRuntimeChooser() {
+        return runtimeChooser;
+    }
+
+    @NonNull
+    @Override
+    protected BrokerUriParser getParser() {
+        return parser;
+    }
+
+    @Override
+    protected boolean getWarmUpOnCreate() {
+        return warmUpOnCreate;
+    }
+}
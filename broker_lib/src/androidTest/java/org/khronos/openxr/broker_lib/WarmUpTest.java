@@ -0,0 +1,90 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+import org.khronos.openxr.runtime_broker.utils.BrokerContract;
+import org.khronos.openxr.runtime_broker.utils.RuntimeChooser;
+import org.khronos.openxr.runtime_broker.utils.RuntimeData;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Startup latency of the first query, with and without warm-up.
+ * <p>
+ * The chooser sleeps to stand in for the cost of a cold lookup (dependency injection,
+ * preference loading and the package scan).
+ */
+public class WarmUpTest {
+    private static final String TAG = "WarmUpTest";
+    private static final long coldLookupMillis = 200;
+    private static final String[] projection = new String[]{
+            BrokerContract.ActiveRuntime.Columns.PACKAGE_NAME,
+    };
+
+    /**
+     * A chooser that is slow on its first call, and counts calls.
+     */
+    private static final class SlowChooser implements RuntimeChooser {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Nullable
+        @Override
+        public RuntimeData getActiveRuntime(@NonNull Context context, int majorVersion, @NonNull String abi) {
+            if (calls.getAndIncrement() == 0) {
+                SystemClock.sleep(coldLookupMillis);
+            }
+            return new RuntimeData("org.khronos.example", "/data/app/example/lib/" + abi,
+                    "libopenxr_example.so", majorVersion, Collections.emptyMap(),
+                    BrokerContract.BrokerType.RuntimeBroker);
+        }
+    }
+
+    /**
+     * Time to answer the first query, made delayMillis after the broker was created.
+     */
+    private static long firstQueryMillis(TestBroker broker, long delayMillis) {
+        SystemClock.sleep(delayMillis);
+        Uri uri = BrokerContract.ActiveRuntime.makeContentUri(
+                BrokerContract.BrokerType.RuntimeBroker, 1, Build.SUPPORTED_ABIS[0]);
+        long start = SystemClock.elapsedRealtime();
+        try (Cursor cursor = broker.query(uri, projection, null, null, null)) {
+            assertThat(cursor).isNotNull();
+            assertThat(cursor.moveToFirst()).isTrue();
+        }
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    @Test
+    public void firstQueryAfterWarmUp() {
+        long coldMillis = firstQueryMillis(TestBroker.create(new SlowChooser(), false), coldLookupMillis);
+        long warmMillis = firstQueryMillis(TestBroker.create(new SlowChooser(), true), coldLookupMillis * 2);
+        Log.i(TAG, "First query after startup: " + coldMillis + " ms cold, " + warmMillis + " ms warmed up");
+        assertThat(coldMillis).isAtLeast(coldLookupMillis);
+        assertThat(warmMillis).isLessThan(coldLookupMillis);
+    }
+
+    @Test
+    public void firstQueryJoinsWarmUp() {
+        SlowChooser chooser = new SlowChooser();
+        long joinedMillis = firstQueryMillis(TestBroker.create(chooser, true), 0);
+        Log.i(TAG, "First query during warm-up: " + joinedMillis + " ms");
+        // Let warm-up finish the other ABIs.
+        SystemClock.sleep(coldLookupMillis);
+        // One lookup per supported ABI: the query did not repeat the warm-up lookup.
+        assertThat(chooser.calls.get()).isEqualTo(Build.SUPPORTED_ABIS.length);
+    }
+}
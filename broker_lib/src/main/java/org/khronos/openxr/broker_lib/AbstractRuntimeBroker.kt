@@ -2,33 +2,107 @@
 // SPDX-License-Identifier: BSL-1.0
 package org.khronos.openxr.broker_lib
 
+import android.content.ClipDescription
 import android.content.ContentProvider
+import android.content.ContentProvider.PipeDataWriter
 import android.content.ContentValues
+import android.content.pm.PackageManager
+import android.content.res.AssetFileDescriptor
 import android.database.Cursor
 import android.net.Uri
-import android.util.Log
+import android.os.Build
+import android.os.Bundle
+import android.os.ParcelFileDescriptor
 import org.khronos.openxr.runtime_broker.utils.BrokerContract
+import org.khronos.openxr.runtime_broker.utils.BrokerLog
+import org.khronos.openxr.runtime_broker.utils.BrokerTrace
 import org.khronos.openxr.runtime_broker.utils.RuntimeChooser
 import org.khronos.openxr.runtime_broker.utils.RuntimeData
+import org.khronos.openxr.runtime_broker.utils.RuntimeDescriptor
+import java.io.FileDescriptor
+import java.io.FileNotFoundException
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.PrintWriter
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.FutureTask
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Abstract implementation of an OpenXR "Runtime Broker" content provider.
  *
  * An implementation only needs to provide an implementation of the RuntimeChooser interface and a BrokerUriParser.
+ *
+ * Chooser results (including "no runtime" results) are cached until [RuntimeCacheGeneration] is
+ * invalidated, which [RuntimeRegistry] does when runtime packages are added, removed, replaced or
+ * changed. Answers from an [ExpiringRuntimeChooser] are also dropped when their lifetime ends.
+ * Concurrent cache misses for the same lookup share a single chooser call.
+ * Each invalidation is also reported to clients as a change to [BrokerContract.makeBaseContentUri],
+ * so they can drop their own cached lookups.
+ *
+ * Lookup counters and latencies are available from the [BrokerContract.Stats] URI and from
+ * `adb shell dumpsys activity provider`. Trace sections and counters named in [BrokerTrace] show
+ * the same pipeline in systrace and Perfetto captures.
  */
 abstract class AbstractRuntimeBroker : ContentProvider() {
     protected abstract val runtimeChooser: RuntimeChooser
     protected abstract val parser: BrokerUriParser
 
+    /**
+     * Whether chooser results may be cached.
+     *
+     * Override to return false if your RuntimeChooser depends on state that does not call
+     * [RuntimeCacheGeneration.invalidate] when it changes.
+     */
+    protected open val cacheResults: Boolean = true
+
+    /**
+     * Whether to start resolving the active runtime in the background as soon as the broker is
+     * created, for all supported ABIs and [warmUpMajorVersions].
+     *
+     * This moves the cost of the first lookup (dependency injection, preference loading, the
+     * package scan) off the first client's binder thread. A query arriving while warm-up is
+     * still running waits for the warm-up result instead of repeating the work. Only used if
+     * [cacheResults] is true.
+     */
+    protected open val warmUpOnCreate: Boolean = false
+
+    /**
+     * The OpenXR major versions to resolve if [warmUpOnCreate] is true.
+     */
+    protected open val warmUpMajorVersions: IntArray
+        get() = intArrayOf(1)
+
+    private val queryCache = RuntimeQueryCache()
+
+    /**
+     * A lookup that may be shared by several threads, which stores its result in queryCache when
+     * run.
+     */
+    private class InFlightLookup(val generation: Long, val task: FutureTask<RuntimeData?>)
+
+    /**
+     * Lookups (from queries or warm-up) that have not completed yet, at most one per key.
+     */
+    private val inFlight = ConcurrentHashMap<RuntimeQueryKey, InFlightLookup>()
+
+    private val stats: BrokerStats by lazy { BrokerStats(parser.brokerType) }
+
+    private val inFlightQueries = AtomicInteger()
+
     /**
      * ContentProvider interface: get mime type.
      */
     override fun getType(uri: Uri): String? {
-        val parsed: ParsedBrokerUri = parser.parse(uri)
-            ?: throw IllegalArgumentException("Could not parse URI $uri")
+        val parsed: ParsedBrokerUri = parseUri(uri)
+        val isDir = parsed.isDir
         return when (parsed.tableType) {
-            TableType.ActiveRuntime -> makeMime(parsed.isDir, "activeRuntime")
-            TableType.Functions -> makeMime(parsed.isDir, BrokerContract.Functions.TABLE_PATH)
+            TableType.ActiveRuntime -> if (isDir) activeRuntimeDirMime else activeRuntimeItemMime
+            TableType.Functions -> if (isDir) functionsDirMime else functionsItemMime
+            TableType.Stats -> statsDirMime
+            TableType.BulkActiveRuntime -> bulkActiveRuntimeDirMime
         }
     }
 
@@ -42,12 +116,35 @@ abstract class AbstractRuntimeBroker : ContentProvider() {
     ): Cursor? {
         require((selection == null && selectionArgs == null)) { "selection not supported" }
         require(sortOrder == null) { "sortOrder not supported" }
-        val parsed: ParsedBrokerUri = parser.parse(uri)
-            ?: throw IllegalArgumentException("Could not parse URI $uri")
-        return when (parsed.tableType) {
-            TableType.ActiveRuntime -> queryActiveRuntime(parsed, projection)
-            TableType.Functions -> queryFunctions(parsed, projection)
+        val parsed: ParsedBrokerUri = parseUri(uri)
+        val operation = when (parsed.tableType) {
+            TableType.ActiveRuntime -> BrokerStats.Operation.ActiveRuntime
+            TableType.Functions -> BrokerStats.Operation.Functions
+            TableType.BulkActiveRuntime -> BrokerStats.Operation.BulkActiveRuntime
+            TableType.Stats -> return queryStats(projection)
         }
+        val start = System.nanoTime()
+        BrokerTrace.setCounter(BrokerTrace.IN_FLIGHT_QUERIES, inFlightQueries.incrementAndGet().toLong())
+        try {
+            return when (operation) {
+                BrokerStats.Operation.ActiveRuntime -> queryActiveRuntime(parsed, projection)
+                BrokerStats.Operation.BulkActiveRuntime -> queryBulkActiveRuntime(uri, projection)
+                else -> queryFunctions(parsed, projection)
+            }
+        } finally {
+            stats.recordLatency(operation, System.nanoTime() - start)
+            BrokerTrace.setCounter(BrokerTrace.IN_FLIGHT_QUERIES, inFlightQueries.decrementAndGet().toLong())
+        }
+    }
+
+    private fun parseUri(uri: Uri): ParsedBrokerUri {
+        // Traced here rather than in the parser, which also runs in off-device benchmarks.
+        val parsed = BrokerTrace.section(BrokerTrace.PARSE_URI) { parser.parse(uri) }
+        if (parsed == null) {
+            stats.recordParseFailure()
+            throw IllegalArgumentException("Could not parse URI $uri")
+        }
+        return parsed
     }
 
     /**
@@ -56,59 +153,453 @@ abstract class AbstractRuntimeBroker : ContentProvider() {
     private fun queryActiveRuntime(parsed: ParsedBrokerUri, projection: Array<String>?): Cursor? {
         val runtimeCursorBuilder = ActiveRuntimeCursorBuilder(null, projection!!)
         try {
-            val runtime: RuntimeData? =
-                runtimeChooser.getActiveRuntime(
-                    context!!.applicationContext,
-                    parsed.majorVer, parsed.abi
-                )
+            val runtime: RuntimeData? = getActiveRuntime(parsed.majorVer, parsed.abi)
             // This table only has one row, so asking for row 0 or asking for a dir (all rows)
             // are equivalent.
             val row = parsed.row ?: 0
             if (runtime != null && row == 0) {
-                Log.i(TAG, "Returning runtime: ${runtime.nativeLibraryDir}  ${runtime.soFilename}")
-                runtimeCursorBuilder.addRow(0, runtime)
+                BrokerLog.d(TAG) { "Returning runtime: ${runtime.nativeLibraryDir}  ${runtime.soFilename}" }
+                BrokerTrace.section(BrokerTrace.BUILD_CURSOR) { runtimeCursorBuilder.addRow(0, runtime) }
             }
         } catch (e: Exception) {
-            Log.w(TAG, "Caught exception in runtimeChooser: ${e.message}")
+            BrokerLog.w(TAG) { "Caught exception in runtimeChooser: ${e.message}" }
+            stats.recordChooserException()
             return null
         } catch (e: NotImplementedError) {
-            Log.w(TAG, "Caught NotImplementedError in runtimeChooser: ${e.message}")
+            BrokerLog.w(TAG) { "Caught NotImplementedError in runtimeChooser: ${e.message}" }
+            stats.recordChooserException()
             return null
         }
         return runtimeCursorBuilder.cursor
     }
 
+    /**
+     * Provides the internals of query() for the bulk activeRuntime URI.
+     */
+    private fun queryBulkActiveRuntime(uri: Uri, projection: Array<String>?): Cursor? {
+        val majorVers = uri.getQueryParameters(BrokerContract.BulkActiveRuntime.QUERY_MAJOR_VERSION)
+            .map { param ->
+                val majorVer = param.toIntOrNull()
+                require(majorVer != null && majorVer >= 0) { "Invalid major version $param" }
+                majorVer
+            }
+            .toIntArray()
+        require(majorVers.isNotEmpty()) { "major version is required" }
+        val abis = uri.getQueryParameters(BrokerContract.BulkActiveRuntime.QUERY_ABI)
+            .ifEmpty { Build.SUPPORTED_ABIS.asList() }
+            .toTypedArray()
+        val rowCount = majorVers.size * abis.size
+        require(rowCount <= MAX_BULK_COMBINATIONS) { "Too many combinations requested: $rowCount" }
+        val cursorBuilder = BulkActiveRuntimeCursorBuilder(
+            projection ?: BulkActiveRuntimeCursorBuilder.allColumns,
+            rowCount
+        )
+        try {
+            val runtimes = getActiveRuntimes(majorVers, abis)
+            BrokerTrace.section(BrokerTrace.BUILD_CURSOR) {
+                for (v in majorVers.indices) {
+                    for (a in abis.indices) {
+                        cursorBuilder.addRow(majorVers[v], abis[a], runtimes[v * abis.size + a])
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            BrokerLog.w(TAG) { "Caught exception in runtimeChooser: ${e.message}" }
+            stats.recordChooserException()
+            return null
+        } catch (e: NotImplementedError) {
+            BrokerLog.w(TAG) { "Caught NotImplementedError in runtimeChooser: ${e.message}" }
+            stats.recordChooserException()
+            return null
+        }
+        return cursorBuilder.cursor
+    }
+
     /**
      * Provides the internals of query() for the functions URIs.
      */
     private fun queryFunctions(parsed: ParsedBrokerUri, projection: Array<String>?): Cursor? {
         try {
-            val appContext = context?.applicationContext ?: return null
-            val runtime = runtimeChooser.getActiveRuntime(
-                appContext,
-                parsed.majorVer,
-                parsed.abi
-            ) ?: return null
+            val runtime = getActiveRuntime(parsed.majorVer, parsed.abi) ?: return null
             if (runtime.packageName != parsed.packageName) {
                 return null
             }
             val cursorBuilder = RuntimeFunctionsCursorBuilder(runtime, projection!!)
             val rowNum = parsed.row
-            if (rowNum != null) {
-                cursorBuilder.addRow(rowNum)
-            } else {
-                cursorBuilder.addAllRows()
+            BrokerTrace.section(BrokerTrace.BUILD_CURSOR) {
+                if (rowNum != null) {
+                    cursorBuilder.addRow(rowNum)
+                } else {
+                    cursorBuilder.addAllRows()
+                }
             }
             return cursorBuilder.cursor
         } catch (e: Exception) {
-            Log.w(TAG, "Caught exception in runtimeChooser: ${e.message}")
+            BrokerLog.w(TAG) { "Caught exception in runtimeChooser: ${e.message}" }
+            stats.recordChooserException()
             return null
         } catch (e: NotImplementedError) {
-            Log.w(TAG, "Caught NotImplementedError in runtimeChooser: ${e.message}")
+            BrokerLog.w(TAG) { "Caught NotImplementedError in runtimeChooser: ${e.message}" }
+            stats.recordChooserException()
             return null
         }
     }
 
+    /**
+     * ContentProvider interface: implements the BrokerContract.Call interface.
+     *
+     * Unlike query(), call() does not check the provider's read permission for us.
+     */
+    override fun call(method: String, arg: String?, extras: Bundle?): Bundle? {
+        if (method != BrokerContract.Call.METHOD_GET_ACTIVE_RUNTIME) {
+            return super.call(method, arg, extras)
+        }
+        enforceReadPermission()
+        requireNotNull(extras) { "extras are required" }
+        require(extras.containsKey(BrokerContract.Call.EXTRA_MAJOR_VERSION)) { "major version is required" }
+        val majorVer = extras.getInt(BrokerContract.Call.EXTRA_MAJOR_VERSION)
+        val abi = extras.getString(BrokerContract.Call.EXTRA_ABI) ?: Build.SUPPORTED_ABIS[0]
+        val result = Bundle()
+        val start = System.nanoTime()
+        try {
+            val runtime = getActiveRuntime(majorVer, abi) ?: return result
+            result.putString(BrokerContract.ActiveRuntime.Columns.PACKAGE_NAME, runtime.packageName)
+            result.putString(BrokerContract.ActiveRuntime.Columns.NATIVE_LIB_DIR, runtime.nativeLibraryDir)
+            result.putString(BrokerContract.ActiveRuntime.Columns.SO_FILENAME, runtime.soFilename)
+            result.putStringArray(
+                BrokerContract.Call.EXTRA_FUNCTION_NAMES,
+                runtime.functionTable.copyFunctionNames()
+            )
+            result.putStringArray(
+                BrokerContract.Call.EXTRA_SYMBOL_NAMES,
+                runtime.functionTable.copySymbolNames()
+            )
+        } catch (e: Exception) {
+            BrokerLog.w(TAG) { "Caught exception in runtimeChooser: ${e.message}" }
+            stats.recordChooserException()
+            result.clear()
+        } catch (e: NotImplementedError) {
+            BrokerLog.w(TAG) { "Caught NotImplementedError in runtimeChooser: ${e.message}" }
+            stats.recordChooserException()
+            result.clear()
+        } finally {
+            stats.recordLatency(BrokerStats.Operation.Call, System.nanoTime() - start)
+        }
+        return result
+    }
+
+    /**
+     * ContentProvider interface: offers the RuntimeDescriptor type for the activeRuntime URI.
+     */
+    override fun getStreamTypes(uri: Uri, mimeTypeFilter: String): Array<String>? {
+        val parsed = parser.parse(uri) ?: return null
+        if (parsed.tableType != TableType.ActiveRuntime ||
+            !ClipDescription.compareMimeTypes(DESCRIPTOR_MIME_TYPE, mimeTypeFilter)
+        ) {
+            return null
+        }
+        return arrayOf(DESCRIPTOR_MIME_TYPE)
+    }
+
+    /**
+     * ContentProvider interface: streams the active runtime and its functions as a
+     * RuntimeDescriptor through a pipe, instead of building cursors.
+     */
+    override fun openTypedAssetFile(
+        uri: Uri,
+        mimeTypeFilter: String,
+        opts: Bundle?
+    ): AssetFileDescriptor? {
+        if (!ClipDescription.compareMimeTypes(DESCRIPTOR_MIME_TYPE, mimeTypeFilter)) {
+            return super.openTypedAssetFile(uri, mimeTypeFilter, opts)
+        }
+        val parsed = parseUri(uri)
+        if (parsed.tableType != TableType.ActiveRuntime) {
+            throw FileNotFoundException("No runtime descriptor for $uri")
+        }
+        val start = System.nanoTime()
+        val descriptor: ByteArray?
+        try {
+            descriptor = getActiveRuntime(parsed.majorVer, parsed.abi)?.let {
+                RuntimeDescriptor.encode(it)
+            }
+        } catch (e: Exception) {
+            BrokerLog.w(TAG) { "Caught exception in runtimeChooser: ${e.message}" }
+            stats.recordChooserException()
+            throw FileNotFoundException("Could not get active runtime for $uri")
+        } catch (e: NotImplementedError) {
+            BrokerLog.w(TAG) { "Caught NotImplementedError in runtimeChooser: ${e.message}" }
+            stats.recordChooserException()
+            throw FileNotFoundException("Could not get active runtime for $uri")
+        } finally {
+            stats.recordLatency(BrokerStats.Operation.Descriptor, System.nanoTime() - start)
+        }
+        descriptor ?: throw FileNotFoundException("No active runtime for $uri")
+        val pipe = openPipeHelper(uri, DESCRIPTOR_MIME_TYPE, opts, descriptor, descriptorWriter)
+        return AssetFileDescriptor(pipe, 0, AssetFileDescriptor.UNKNOWN_LENGTH)
+    }
+
+    /**
+     * Provides the internals of query() for the stats URI.
+     */
+    private fun queryStats(projection: Array<String>?): Cursor {
+        val cursorBuilder = StatsCursorBuilder(projection ?: statsColumns)
+        cursorBuilder.addAllRows(stats)
+        return cursorBuilder.cursor
+    }
+
+    /**
+     * ContentProvider interface: prints the broker stats, for `adb shell dumpsys activity provider`.
+     */
+    override fun dump(fd: FileDescriptor?, writer: PrintWriter, args: Array<out String>?) {
+        stats.dump(writer)
+    }
+
+    private fun enforceReadPermission() {
+        val permission = readPermission ?: return
+        if (context!!.checkCallingOrSelfPermission(permission) != PackageManager.PERMISSION_GRANTED) {
+            throw SecurityException("Permission Denial: requires $permission")
+        }
+    }
+
+    /**
+     * Count an exception that the chooser recovered from on its own, such as a failed
+     * [RuntimeChooserChain] link, in the chooser_exceptions stat.
+     */
+    protected fun recordChooserException() {
+        stats.recordChooserException()
+    }
+
+    /**
+     * Get the active runtime, from the cache if possible.
+     *
+     * Exceptions from the chooser are propagated and nothing is cached for them.
+     */
+    private fun getActiveRuntime(majorVer: Int, abi: String): RuntimeData? {
+        val runtime = getActiveRuntimeUncounted(majorVer, abi)
+        if (runtime == null) {
+            stats.recordNullResult()
+        }
+        return runtime
+    }
+
+    private fun getActiveRuntimeUncounted(majorVer: Int, abi: String): RuntimeData? {
+        if (!cacheResults) {
+            return chooseRuntime(majorVer, abi)
+        }
+        val key = RuntimeQueryKey(parser.brokerType, majorVer, abi)
+        // Read the generation before asking the chooser, so that an invalidation racing with
+        // the lookup leaves the result tagged as stale.
+        val generation = RuntimeCacheGeneration.current
+        val cached = queryCache.get(key, generation)
+        if (cached != null) {
+            stats.recordCacheHit()
+            return cached.runtime
+        }
+        stats.recordCacheMiss()
+        val lookup = newLookup(key, generation)
+        while (true) {
+            val existing = inFlight.putIfAbsent(key, lookup)
+            if (existing == null) {
+                return runLookup(key, lookup)
+            }
+            if (existing.generation == generation) {
+                stats.recordCoalescedLookup()
+                return joinLookup(existing)
+            }
+            if (existing.generation > generation) {
+                // This thread read the generation before an invalidation that the existing
+                // lookup has seen: answer this one query without sharing.
+                return runLookup(key, lookup)
+            }
+            // The existing lookup is stale: take its place, or retry if it just finished.
+            if (inFlight.replace(key, existing, lookup)) {
+                return runLookup(key, lookup)
+            }
+        }
+    }
+
+    /**
+     * Make a lookup that answers from queryCache if another lookup for the same generation has
+     * completed in the meantime, and otherwise asks the chooser and caches the result.
+     */
+    private fun newLookup(key: RuntimeQueryKey, generation: Long): InFlightLookup {
+        val task = FutureTask {
+            val cached = queryCache.get(key, generation)
+            if (cached != null) {
+                cached.runtime
+            } else {
+                chooseAndCache(key, generation)
+            }
+        }
+        return InFlightLookup(generation, task)
+    }
+
+    /**
+     * Ask the chooser for one lookup, and cache the answer for as long as the chooser allows.
+     */
+    private fun chooseAndCache(key: RuntimeQueryKey, generation: Long): RuntimeData? {
+        if (runtimeChooser !is ExpiringRuntimeChooser) {
+            val runtime = chooseRuntime(key.majorVer, key.abi)
+            queryCache.put(key, generation, runtime)
+            return runtime
+        }
+        val lifetimes = LongArray(1)
+        val runtime = chooseRuntimes(intArrayOf(key.majorVer), arrayOf(key.abi), lifetimes)[0]
+        queryCache.put(key, generation, runtime, lifetimes[0])
+        return runtime
+    }
+
+    /**
+     * Run a lookup on this thread, then stop sharing it.
+     */
+    private fun runLookup(key: RuntimeQueryKey, lookup: InFlightLookup): RuntimeData? {
+        try {
+            return joinLookup(lookup)
+        } finally {
+            inFlight.remove(key, lookup)
+        }
+    }
+
+    /**
+     * Get the result of a shared lookup, running it on this thread if it has not started yet.
+     */
+    private fun joinLookup(lookup: InFlightLookup): RuntimeData? {
+        // Does nothing if the task is already running or done.
+        lookup.task.run()
+        try {
+            return lookup.task.get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+    }
+
+    /**
+     * Queue warm-up lookups for all supported ABIs and [warmUpMajorVersions].
+     */
+    private fun startWarmUp() {
+        val generation = RuntimeCacheGeneration.current
+        val queued = ArrayList<Pair<RuntimeQueryKey, InFlightLookup>>()
+        for (majorVer in warmUpMajorVersions) {
+            for (abi in Build.SUPPORTED_ABIS) {
+                val key = RuntimeQueryKey(parser.brokerType, majorVer, abi)
+                val lookup = newLookup(key, generation)
+                if (inFlight.putIfAbsent(key, lookup) == null) {
+                    queued.add(key to lookup)
+                }
+            }
+        }
+        val executor = Executors.newSingleThreadExecutor()
+        executor.execute {
+            for ((key, lookup) in queued) {
+                lookup.task.run()
+                inFlight.remove(key, lookup)
+            }
+        }
+        // Let the thread exit once warm-up is done.
+        executor.shutdown()
+    }
+
+    /**
+     * Get the active runtimes for all combinations of major versions and ABIs, from the cache if
+     * all of them are cached, or from a single batch chooser call otherwise.
+     *
+     * @return one entry per combination, as returned by RuntimeChooser.getActiveRuntimes().
+     */
+    private fun getActiveRuntimes(majorVers: IntArray, abis: Array<String>): Array<RuntimeData?> {
+        val runtimes = getActiveRuntimesUncounted(majorVers, abis)
+        for (runtime in runtimes) {
+            if (runtime == null) {
+                stats.recordNullResult()
+            }
+        }
+        return runtimes
+    }
+
+    private fun getActiveRuntimesUncounted(
+        majorVers: IntArray,
+        abis: Array<String>
+    ): Array<RuntimeData?> {
+        if (!cacheResults) {
+            return chooseRuntimes(majorVers, abis)
+        }
+        val generation = RuntimeCacheGeneration.current
+        val keys = ArrayList<RuntimeQueryKey>(majorVers.size * abis.size)
+        for (majorVer in majorVers) {
+            for (abi in abis) {
+                keys.add(RuntimeQueryKey(parser.brokerType, majorVer, abi))
+            }
+        }
+        val cached = arrayOfNulls<RuntimeData>(keys.size)
+        var allCached = true
+        for (i in keys.indices) {
+            val entry = queryCache.get(keys[i], generation)
+            if (entry == null) {
+                allCached = false
+                break
+            }
+            cached[i] = entry.runtime
+        }
+        if (allCached) {
+            stats.recordCacheHit()
+            return cached
+        }
+        stats.recordCacheMiss()
+        val lifetimes = LongArray(keys.size)
+        val runtimes = chooseRuntimes(majorVers, abis, lifetimes)
+        for (i in keys.indices) {
+            queryCache.put(keys[i], generation, runtimes[i], lifetimes[i])
+        }
+        return runtimes
+    }
+
+    /**
+     * Ask the chooser for several combinations at once, recording how long it takes.
+     *
+     * @param cacheLifetimesMillis if not null, filled with how long each answer may be cached.
+     */
+    private fun chooseRuntimes(
+        majorVers: IntArray,
+        abis: Array<String>,
+        cacheLifetimesMillis: LongArray? = null
+    ): Array<RuntimeData?> {
+        val start = System.nanoTime()
+        BrokerTrace.beginSection(BrokerTrace.CHOOSE_RUNTIME)
+        try {
+            val appContext = context!!.applicationContext
+            val chooser = runtimeChooser
+            val runtimes: Array<RuntimeData?> =
+                if (cacheLifetimesMillis != null && chooser is ExpiringRuntimeChooser) {
+                    chooser.getExpiringRuntimes(appContext, majorVers, abis, cacheLifetimesMillis)
+                } else {
+                    cacheLifetimesMillis?.fill(Long.MAX_VALUE)
+                    chooser.getActiveRuntimes(appContext, majorVers, abis)
+                }
+            check(runtimes.size == majorVers.size * abis.size) {
+                "RuntimeChooser returned ${runtimes.size} runtimes for " +
+                        "${majorVers.size * abis.size} combinations"
+            }
+            return runtimes
+        } finally {
+            BrokerTrace.endSection()
+            stats.recordChooserTime(System.nanoTime() - start)
+        }
+    }
+
+    /**
+     * Ask the chooser, recording how long it takes.
+     */
+    private fun chooseRuntime(majorVer: Int, abi: String): RuntimeData? {
+        val start = System.nanoTime()
+        BrokerTrace.beginSection(BrokerTrace.CHOOSE_RUNTIME)
+        try {
+            return runtimeChooser.getActiveRuntime(context!!.applicationContext, majorVer, abi)
+        } finally {
+            BrokerTrace.endSection()
+            stats.recordChooserTime(System.nanoTime() - start)
+        }
+    }
+
     /**
      * ContentProvider interface: implemented as a no-op.
      */
@@ -134,17 +625,59 @@ abstract class AbstractRuntimeBroker : ContentProvider() {
     }
 
     /**
-     * ContentProvider interface: implemented as a no-op.
+     * ContentProvider interface: starts notifying clients of invalidations. Also starts warm-up,
+     * if enabled.
      */
     override fun onCreate(): Boolean {
+        val context = context!!
+        val contentResolver = context.contentResolver
+        val changeUri = BrokerContract.makeBaseContentUri(parser.brokerType)
+        RuntimeCacheGeneration.addInvalidationListener {
+            // Clients cache the active runtime, so they need to know about any reason.
+            contentResolver.notifyChange(changeUri, null)
+        }
+        if (warmUpOnCreate && cacheResults) {
+            startWarmUp()
+        }
         return true
     }
 
     companion object {
         private const val TAG: String = "AbstractRuntimeBroker"
 
+        private val activeRuntimeDirMime = makeMime(true, "activeRuntime")
+        private val activeRuntimeItemMime = makeMime(false, "activeRuntime")
+        private val functionsDirMime = makeMime(true, BrokerContract.Functions.TABLE_PATH)
+        private val functionsItemMime = makeMime(false, BrokerContract.Functions.TABLE_PATH)
+        private val statsDirMime = makeMime(true, BrokerContract.Stats.TABLE_PATH)
+        private val bulkActiveRuntimeDirMime = makeMime(true, "bulkActiveRuntime")
+
+        private const val DESCRIPTOR_MIME_TYPE = BrokerContract.ActiveRuntime.DESCRIPTOR_MIME_TYPE
+
+        /**
+         * Writes an encoded RuntimeDescriptor to the pipe. The pipe is closed by openPipeHelper.
+         */
+        private val descriptorWriter =
+            PipeDataWriter<ByteArray> { output: ParcelFileDescriptor, _, _, _, descriptor ->
+                try {
+                    FileOutputStream(output.fileDescriptor).write(descriptor)
+                } catch (e: IOException) {
+                    BrokerLog.w(TAG) { "Could not write runtime descriptor: ${e.message}" }
+                }
+            }
+
+        /**
+         * Limit on major versions times ABIs in one bulk query.
+         */
+        private const val MAX_BULK_COMBINATIONS = 64
+
+        private val statsColumns = arrayOf(
+            BrokerContract.Stats.Columns.NAME,
+            BrokerContract.Stats.Columns.VALUE
+        )
+
         /**
-         * Helper used by getType.
+         * Helper used to precompute the types returned by getType.
          */
         private fun makeMime(isDir: Boolean, table: String): String {
             return String.format(
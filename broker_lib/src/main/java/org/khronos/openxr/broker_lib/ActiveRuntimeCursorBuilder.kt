@@ -3,70 +3,61 @@
 package org.khronos.openxr.broker_lib
 
 import android.database.MatrixCursor
-import org.khronos.openxr.broker_lib.ActiveRuntimeCursorBuilder.ColumnFiller
 import org.khronos.openxr.runtime_broker.utils.BrokerContract.ActiveRuntime.Columns
 import org.khronos.openxr.runtime_broker.utils.RuntimeData
-import java.security.InvalidParameterException
-import java.util.*
 
 internal class ActiveRuntimeCursorBuilder(
     private val runtimes: List<RuntimeData>?,
     projection: Array<String>
 ) {
     companion object {
-        private val columnFillerHashMap = HashMap<String, ColumnFiller?>()
-
-        init {
-            columnFillerHashMap[Columns._ID] =
-                ColumnFiller { item: Int, _: RuntimeData -> item }
-            columnFillerHashMap[Columns.PACKAGE_NAME] =
-                ColumnFiller { _: Int, data: RuntimeData -> data.packageName }
-            columnFillerHashMap[Columns.NATIVE_LIB_DIR] =
-                ColumnFiller { _: Int, data: RuntimeData -> data.nativeLibraryDir }
-            columnFillerHashMap[Columns.SO_FILENAME] =
-                ColumnFiller { _: Int, data: RuntimeData -> data.soFilename }
-            columnFillerHashMap[Columns.HAS_FUNCTIONS] =
-                ColumnFiller { _: Int, data: RuntimeData -> if (data.functions.isEmpty()) 0 else 1 }
-        }
+        // Indices into the column list passed to planCache.
+        private const val COLUMN_ID = 0
+        private const val COLUMN_PACKAGE_NAME = 1
+        private const val COLUMN_NATIVE_LIB_DIR = 2
+        private const val COLUMN_SO_FILENAME = 3
+        private const val COLUMN_HAS_FUNCTIONS = 4
+
+        private val planCache = ProjectionPlanCache(
+            arrayOf(
+                Columns._ID,
+                Columns.PACKAGE_NAME,
+                Columns.NATIVE_LIB_DIR,
+                Columns.SO_FILENAME,
+                Columns.HAS_FUNCTIONS
+            )
+        )
     }
 
-    private val columnFillers = ArrayList<ColumnFiller>()
-    val cursor: MatrixCursor
+    private val plan: IntArray = planCache.getPlan(projection)
+    val cursor: MatrixCursor = MatrixCursor(projection, 1)
+
     fun addRow(itemNum: Int) {
         runtimes ?: return
 
         if (itemNum >= runtimes.size) {
             return
         }
-        val data = runtimes[itemNum]
-        val row = ArrayList<Any?>(columnFillers.size)
-        for (filler in columnFillers) {
-            row.add(filler.getColumnData(itemNum, data))
-        }
-        cursor.addRow(row)
+        fillRow(itemNum, runtimes[itemNum])
     }
 
     fun addRow(itemNum: Int, data: RuntimeData) {
         if (runtimes != null) {
             return
         }
-        val row = Vector<Any?>()
-        for (filler in columnFillers) {
-            row.add(filler.getColumnData(itemNum, data))
-        }
-        cursor.addRow(row)
-    }
-
-    private fun interface ColumnFiller {
-        fun getColumnData(itemNum: Int, data: RuntimeData): Any?
+        fillRow(itemNum, data)
     }
 
-    init {
-        for (column in projection) {
-            val filler = columnFillerHashMap.getOrDefault(column, null)
-                ?: throw InvalidParameterException("Invalid column name passed: $column")
-            columnFillers.add(filler)
+    private fun fillRow(itemNum: Int, data: RuntimeData) {
+        val row = cursor.newRow()
+        for (column in plan) {
+            when (column) {
+                COLUMN_ID -> row.add(itemNum)
+                COLUMN_PACKAGE_NAME -> row.add(data.packageName)
+                COLUMN_NATIVE_LIB_DIR -> row.add(data.nativeLibraryDir)
+                COLUMN_SO_FILENAME -> row.add(data.soFilename)
+                COLUMN_HAS_FUNCTIONS -> row.add(if (data.functionTable.isEmpty) 0 else 1)
+            }
         }
-        cursor = MatrixCursor(projection)
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import android.content.Context
+import android.util.Log
+import org.khronos.openxr.runtime_broker.utils.BrokerContract
+import org.khronos.openxr.runtime_broker.utils.RuntimeChooser
+import org.khronos.openxr.runtime_broker.utils.RuntimeData
+import org.khronos.openxr.runtime_broker.utils.getRuntimeFromContentProvider
+
+/**
+ * A RuntimeChooser that asks another runtime broker, so that one broker can answer for both.
+ *
+ * The returned RuntimeData carries the other broker's type. Best used in a [RuntimeChooserChain]
+ * link with a not-found TTL, as every lookup is a round trip to the other broker.
+ *
+ * @param brokerType the broker to ask.
+ */
+class BrokerRuntimeChooser(private val brokerType: BrokerContract.BrokerType) : RuntimeChooser {
+    override fun getActiveRuntime(context: Context, majorVersion: Int, abi: String): RuntimeData? {
+        return try {
+            getRuntimeFromContentProvider(brokerType, context, majorVersion, abi)
+        } catch (e: SecurityException) {
+            Log.w(TAG, "Not allowed to ask the $brokerType: ${e.message}")
+            null
+        }
+    }
+
+    companion object {
+        private const val TAG = "BrokerRuntimeChooser"
+    }
+}
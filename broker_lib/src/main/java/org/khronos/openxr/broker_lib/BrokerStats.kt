@@ -0,0 +1,103 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import org.khronos.openxr.runtime_broker.utils.BrokerContract
+import org.khronos.openxr.runtime_broker.utils.BrokerTrace
+import java.io.PrintWriter
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Counters and latency histograms for one broker, since its process started.
+ *
+ * Everything is lock-free, so recording is safe and cheap on binder threads.
+ */
+internal class BrokerStats(val brokerType: BrokerContract.BrokerType) {
+    /**
+     * The kinds of request whose latency is recorded.
+     */
+    enum class Operation(val statName: String) {
+        ActiveRuntime("active_runtime"),
+        Functions("functions"),
+        BulkActiveRuntime("bulk_active_runtime"),
+        Descriptor("descriptor"),
+        Call("call")
+    }
+
+    private val cacheHits = LongAdder()
+    private val cacheMisses = LongAdder()
+    private val coalescedLookups = LongAdder()
+    private val nullResults = LongAdder()
+    private val parseFailures = LongAdder()
+    private val chooserExceptions = LongAdder()
+    private val chooserTime = LatencyHistogram()
+    private val latencies = Array(Operation.values().size) { LatencyHistogram() }
+
+    fun recordCacheHit() {
+        cacheHits.increment()
+        traceCacheHitPercent()
+    }
+
+    fun recordCacheMiss() {
+        cacheMisses.increment()
+        traceCacheHitPercent()
+    }
+
+    /**
+     * Record a cache miss that was answered by another thread's in-flight lookup.
+     */
+    fun recordCoalescedLookup() = coalescedLookups.increment()
+
+    fun recordNullResult() = nullResults.increment()
+
+    fun recordParseFailure() = parseFailures.increment()
+
+    fun recordChooserException() = chooserExceptions.increment()
+
+    private fun traceCacheHitPercent() {
+        if (!BrokerTrace.isCounterEnabled()) {
+            return
+        }
+        val hits = cacheHits.sum()
+        val lookups = hits + cacheMisses.sum()
+        if (lookups > 0) {
+            BrokerTrace.setCounter(BrokerTrace.CACHE_HIT_PERCENT, hits * 100 / lookups)
+        }
+    }
+
+    /**
+     * Record the time spent in one call to RuntimeChooser.getActiveRuntime().
+     */
+    fun recordChooserTime(nanos: Long) = chooserTime.record(nanos)
+
+    /**
+     * Record the total time spent handling one request.
+     */
+    fun recordLatency(operation: Operation, nanos: Long) = latencies[operation.ordinal].record(nanos)
+
+    /**
+     * Report every value, in a stable order.
+     *
+     * @param action called with each name and value.
+     */
+    fun forEachValue(action: (String, Long) -> Unit) {
+        action("cache_hits", cacheHits.sum())
+        action("cache_misses", cacheMisses.sum())
+        action("coalesced_lookups", coalescedLookups.sum())
+        action("null_results", nullResults.sum())
+        action("parse_failures", parseFailures.sum())
+        action("chooser_exceptions", chooserExceptions.sum())
+        chooserTime.forEachValue("chooser", action)
+        for (operation in Operation.values()) {
+            latencies[operation.ordinal].forEachValue("latency.${operation.statName}", action)
+        }
+    }
+
+    /**
+     * Print every value, one per line, for ContentProvider.dump().
+     */
+    fun dump(writer: PrintWriter) {
+        writer.println("Runtime broker stats ($brokerType):")
+        forEachValue { name, value -> writer.println("  $name: $value") }
+    }
+}
@@ -2,18 +2,24 @@
 // SPDX-License-Identifier: BSL-1.0
 package org.khronos.openxr.broker_lib
 
-import android.content.ContentUris
-import android.content.UriMatcher
 import android.net.Uri
-import android.util.Log
+import android.os.Build
 import org.khronos.openxr.runtime_broker.utils.BrokerContract
+import org.khronos.openxr.runtime_broker.utils.BrokerLog
 
 /**
  * Helper utility for parsing runtime broker content-provider URIs.
  *
- * This stores some state to speed matching, so it is a class instead of just a free function.
+ * Parsing is a single pass over the encoded path, which only allocates the result and, for
+ * functions URIs, the package name. ABI strings are shared with [knownAbis] when they match.
+ *
+ * @param brokerType the broker whose authority this parser accepts.
+ * @param knownAbis ABI names to reuse instead of allocating a new string per parse.
  */
-sealed class BrokerUriParser(private val brokerType: BrokerContract.BrokerType) {
+sealed class BrokerUriParser(
+    val brokerType: BrokerContract.BrokerType,
+    private val knownAbis: Array<String>
+) {
 
     /**
      * Make a ParsedBrokerUri from a Uri.
@@ -23,102 +29,200 @@ sealed class BrokerUriParser(private val brokerType: BrokerContract.BrokerType)
      */
     fun parse(uri: Uri): ParsedBrokerUri? {
         if (BrokerContract.CONTENT_SCHEME != uri.scheme) {
-            Log.w(
-                TAG,
+            BrokerLog.w(TAG) {
                 "URI scheme was not the expected '${BrokerContract.CONTENT_SCHEME}': ${uri.scheme}"
-            )
+            }
             return null
         }
         if (uri.authority != authority) {
-            Log.w(
-                TAG,
+            BrokerLog.w(TAG) {
                 "URI authority was not the expected value ${authority}, but instead: ${uri.authority}"
-            )
+            }
             return null
         }
-        val segments = uri.pathSegments
-        var isDir = false
-        val data = ParsedBrokerUri()
-        data.brokerType = brokerType
-        when (uriMatcher.match(uri)) {
-            ActiveRuntimeItemCode -> data.tableType = TableType.ActiveRuntime
-            ActiveRuntimeDirCode -> {
-                data.tableType = TableType.ActiveRuntime
-                isDir = true
-            }
-            FunctionsItemCode -> data.tableType = TableType.Functions
-            FunctionsDirCode -> {
-                data.tableType = TableType.Functions
-                isDir = true
-            }
-            else -> {
-                Log.e(TAG, "UriMatch failed")
+        val path = uri.encodedPath
+        val data = path?.let { parsePath(it) }
+        if (data == null) {
+            BrokerLog.e(TAG) { "UriMatch failed: $path" }
+        }
+        return data
+    }
+
+    /**
+     * Parse the encoded path of a broker URI.
+     *
+     * Accepts /openxr/[majorVer]/abi/[abi]/runtimes/active and
+     * /openxr/[majorVer]/abi/[abi]/runtimes/[packageName]/functions, each optionally followed by
+     * a row ID, just like the UriMatcher this replaced, as well as /openxr/stats and the bulk
+     * /openxr/runtimes/active. Query parameters are left to the caller.
+     *
+     * @param path the encoded path, starting with '/'.
+     * @return the parsed data, or null if the path does not match.
+     */
+    internal fun parsePath(path: String): ParsedBrokerUri? {
+        var end = path.length
+        // Like Uri.getPathSegments(), ignore one trailing slash.
+        if (end > 1 && path[end - 1] == '/') {
+            --end
+        }
+        if (end == 0 || path[0] != '/') {
+            return null
+        }
+
+        // /openxr
+        var start = 1
+        var segmentEnd = segmentEnd(path, start, end)
+        if (!segmentEquals(path, start, segmentEnd, BrokerContract.BASE_PATH)) {
+            return null
+        }
+
+        // /stats, /runtimes/active or /[majorVer]
+        start = segmentEnd + 1
+        segmentEnd = segmentEnd(path, start, end)
+        if (segmentEnd == end &&
+            segmentEquals(path, start, segmentEnd, BrokerContract.Stats.TABLE_PATH)
+        ) {
+            return ParsedBrokerUri(brokerType, TableType.Stats, 0, "", null, null)
+        }
+        if (segmentEquals(path, start, segmentEnd, BrokerContract.RUNTIMES_PATH)) {
+            start = segmentEnd + 1
+            segmentEnd = segmentEnd(path, start, end)
+            if (segmentEnd != end ||
+                !segmentEquals(path, start, segmentEnd, BrokerContract.ActiveRuntime.TABLE_PATH)
+            ) {
                 return null
             }
+            return ParsedBrokerUri(brokerType, TableType.BulkActiveRuntime, 0, "", null, null)
         }
-        // all start /openxr/[majorver]
-        try {
-            data.majorVer = segments[1].toInt()
-        } catch (e: NumberFormatException) {
-            Log.w(TAG, "Could not parse this as a major version number: ${segments[1]}")
+        val majorVer = parseNumber(path, start, segmentEnd)
+        if (majorVer < 0 || majorVer > Int.MAX_VALUE) {
             return null
         }
 
-        // all continue .../abi/[abi]
-        data.abi = segments[3]
+        // /abi/[abi]
+        start = segmentEnd + 1
+        segmentEnd = segmentEnd(path, start, end)
+        if (!segmentEquals(path, start, segmentEnd, BrokerContract.ABI_PATH)) {
+            return null
+        }
+        start = segmentEnd + 1
+        segmentEnd = segmentEnd(path, start, end)
+        if (segmentEnd <= start) {
+            return null
+        }
+        val abi = internAbi(path, start, segmentEnd)
+
+        // /runtimes
+        start = segmentEnd + 1
+        segmentEnd = segmentEnd(path, start, end)
+        if (!segmentEquals(path, start, segmentEnd, BrokerContract.RUNTIMES_PATH)) {
+            return null
+        }
 
-        if (!isDir) {
-            data.row = ContentUris.parseId(uri).toInt()
+        // /active or /[packageName]/functions
+        start = segmentEnd + 1
+        segmentEnd = segmentEnd(path, start, end)
+        if (segmentEnd <= start) {
+            return null
         }
-        if (data.tableType == TableType.Functions) {
-            // These continue .../runtimes/[packageName]
-            data.packageName = segments[5]
+        val tableType: TableType
+        var packageName: String? = null
+        // UriMatcher prefers the literal "active" over a package name wildcard.
+        if (segmentEquals(path, start, segmentEnd, BrokerContract.ActiveRuntime.TABLE_PATH)) {
+            tableType = TableType.ActiveRuntime
+        } else {
+            tableType = TableType.Functions
+            packageName = decodeSegment(path, start, segmentEnd)
+            start = segmentEnd + 1
+            segmentEnd = segmentEnd(path, start, end)
+            if (!segmentEquals(path, start, segmentEnd, BrokerContract.Functions.TABLE_PATH)) {
+                return null
+            }
         }
-        return data
+
+        // Optional /[row]
+        var row: Int? = null
+        if (segmentEnd < end) {
+            start = segmentEnd + 1
+            segmentEnd = segmentEnd(path, start, end)
+            if (segmentEnd != end) {
+                return null
+            }
+            val rowId = parseNumber(path, start, segmentEnd)
+            if (rowId < 0) {
+                return null
+            }
+            // Same truncation as ContentUris.parseId(uri).toInt()
+            row = rowId.toInt()
+        }
+        return ParsedBrokerUri(brokerType, tableType, majorVer.toInt(), abi, packageName, row)
     }
 
+    private fun internAbi(path: String, start: Int, end: Int): String {
+        for (abi in knownAbis) {
+            if (segmentEquals(path, start, end, abi)) {
+                return abi
+            }
+        }
+        return decodeSegment(path, start, end)
+    }
 
     companion object {
-        private const val ActiveRuntimeItemCode = 1
-        private const val ActiveRuntimeDirCode = 2
-        private const val FunctionsItemCode = 3
-        private const val FunctionsDirCode = 4
         private const val TAG = "BrokerUriParser"
+
+        /**
+         * Longest run of digits that always fits in a Long.
+         */
+        private const val MAX_DIGITS = 18
+
+        private fun segmentEnd(path: String, start: Int, end: Int): Int {
+            if (start >= end) {
+                return end
+            }
+            val slash = path.indexOf('/', start)
+            return if (slash < 0 || slash > end) end else slash
+        }
+
+        private fun segmentEquals(path: String, start: Int, end: Int, expected: String): Boolean {
+            return end - start == expected.length &&
+                    path.regionMatches(start, expected, 0, expected.length)
+        }
+
+        /**
+         * Parse a segment of ASCII digits.
+         *
+         * @return the value, or -1 if the segment is empty, too long or not all digits.
+         */
+        private fun parseNumber(path: String, start: Int, end: Int): Long {
+            if (end <= start || end - start > MAX_DIGITS) {
+                return -1
+            }
+            var value = 0L
+            for (i in start until end) {
+                val c = path[i]
+                if (c < '0' || c > '9') {
+                    return -1
+                }
+                value = value * 10 + (c - '0')
+            }
+            return value
+        }
+
+        private fun decodeSegment(path: String, start: Int, end: Int): String {
+            val segment = path.substring(start, end)
+            return if (segment.indexOf('%') >= 0) Uri.decode(segment) else segment
+        }
     }
 
-    private val uriMatcher = UriMatcher(UriMatcher.NO_MATCH)
     private val authority = BrokerContract.brokerToAuthority(brokerType)
+}
 
-    init {
-        val runtimeBasePath =
-            "/${BrokerContract.BASE_PATH}/#/${BrokerContract.ABI_PATH}/*/${BrokerContract.RUNTIMES_PATH}"
-        val activeRuntimeDirPath = "${runtimeBasePath}/${BrokerContract.ActiveRuntime.TABLE_PATH}"
-        Log.i(TAG, "activeRuntimeDirPath: $activeRuntimeDirPath")
-        uriMatcher.addURI(
-            authority,
-            activeRuntimeDirPath,
-            ActiveRuntimeDirCode
-        )
-        uriMatcher.addURI(
-            authority,
-            "${activeRuntimeDirPath}/#",
-            ActiveRuntimeItemCode
-        )
-
-        val runtimeFunctionsDirPath = "${runtimeBasePath}/*/${BrokerContract.Functions.TABLE_PATH}"
-        Log.i(TAG, "runtimeFunctionsDirPath: $runtimeFunctionsDirPath")
-        uriMatcher.addURI(
-            authority,
-            runtimeFunctionsDirPath,
-            FunctionsDirCode
-        )
-        uriMatcher.addURI(
-            authority,
-            "${runtimeFunctionsDirPath}/#",
-            FunctionsItemCode
-        )
-    }
+class RuntimeBrokerUriParser(knownAbis: Array<String>) :
+    BrokerUriParser(BrokerContract.BrokerType.RuntimeBroker, knownAbis) {
+    constructor() : this(Build.SUPPORTED_ABIS)
 }
 
-class RuntimeBrokerUriParser : BrokerUriParser(BrokerContract.BrokerType.RuntimeBroker)
-class SystemRuntimeBrokerUriParser : BrokerUriParser(BrokerContract.BrokerType.SystemRuntimeBroker)
+class SystemRuntimeBrokerUriParser(knownAbis: Array<String>) :
+    BrokerUriParser(BrokerContract.BrokerType.SystemRuntimeBroker, knownAbis) {
+    constructor() : this(Build.SUPPORTED_ABIS)
+}
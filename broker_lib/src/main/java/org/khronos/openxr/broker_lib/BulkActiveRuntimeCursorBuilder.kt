@@ -0,0 +1,57 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import android.database.MatrixCursor
+import org.khronos.openxr.runtime_broker.utils.BrokerContract.BulkActiveRuntime.Columns
+import org.khronos.openxr.runtime_broker.utils.RuntimeData
+
+internal class BulkActiveRuntimeCursorBuilder(projection: Array<String>, rowCount: Int) {
+    companion object {
+        // Indices into the column list passed to planCache.
+        private const val COLUMN_ID = 0
+        private const val COLUMN_MAJOR_VERSION = 1
+        private const val COLUMN_ABI = 2
+        private const val COLUMN_PACKAGE_NAME = 3
+        private const val COLUMN_NATIVE_LIB_DIR = 4
+        private const val COLUMN_SO_FILENAME = 5
+        private const val COLUMN_HAS_FUNCTIONS = 6
+
+        val allColumns = arrayOf(
+            Columns._ID,
+            Columns.MAJOR_VERSION,
+            Columns.ABI,
+            Columns.PACKAGE_NAME,
+            Columns.NATIVE_LIB_DIR,
+            Columns.SO_FILENAME,
+            Columns.HAS_FUNCTIONS
+        )
+
+        private val planCache = ProjectionPlanCache(allColumns)
+    }
+
+    private val plan: IntArray = planCache.getPlan(projection)
+    val cursor: MatrixCursor = MatrixCursor(projection, rowCount)
+    private var itemNum = 0
+
+    /**
+     * Add the row for one combination of major version and ABI.
+     *
+     * @param data the active runtime, or null if there is none.
+     */
+    fun addRow(majorVersion: Int, abi: String, data: RuntimeData?) {
+        val row = cursor.newRow()
+        for (column in plan) {
+            when (column) {
+                COLUMN_ID -> row.add(itemNum)
+                COLUMN_MAJOR_VERSION -> row.add(majorVersion)
+                COLUMN_ABI -> row.add(abi)
+                COLUMN_PACKAGE_NAME -> row.add(data?.packageName)
+                COLUMN_NATIVE_LIB_DIR -> row.add(data?.nativeLibraryDir)
+                COLUMN_SO_FILENAME -> row.add(data?.soFilename)
+                COLUMN_HAS_FUNCTIONS -> row.add(if (data == null || data.functionTable.isEmpty) 0 else 1)
+            }
+        }
+        ++itemNum
+    }
+}
@@ -0,0 +1,30 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import android.content.Context
+import org.khronos.openxr.runtime_broker.utils.RuntimeChooser
+import org.khronos.openxr.runtime_broker.utils.RuntimeData
+
+/**
+ * A RuntimeChooser whose answers may only be cached for a limited time, for instance because they
+ * come from another broker, whose changes do not invalidate [RuntimeCacheGeneration] here.
+ *
+ * [AbstractRuntimeBroker] drops a cached answer from such a chooser when its lifetime ends, as
+ * well as on invalidation.
+ */
+interface ExpiringRuntimeChooser : RuntimeChooser {
+    /**
+     * Like [getActiveRuntimes], also giving how long each answer may be cached.
+     *
+     * @param cacheLifetimesMillis filled with one entry per combination, at the same index as
+     * the answer: how long it may be cached, in milliseconds, or [Long.MAX_VALUE] for as long as
+     * the generation stays current.
+     */
+    fun getExpiringRuntimes(
+        context: Context,
+        majorVersions: IntArray,
+        abis: Array<String>,
+        cacheLifetimesMillis: LongArray
+    ): Array<RuntimeData?>
+}
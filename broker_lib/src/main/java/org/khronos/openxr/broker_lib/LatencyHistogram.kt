@@ -0,0 +1,68 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets.
+ *
+ * Bucket 0 counts durations under 1us, bucket i counts durations in [2^(i-1), 2^i) us, and the
+ * last bucket counts everything longer.
+ */
+internal class LatencyHistogram {
+    private val buckets = AtomicLongArray(BUCKET_COUNT)
+    private val totalNanos = LongAdder()
+
+    /**
+     * Record one duration.
+     *
+     * @param nanos the duration in nanoseconds.
+     */
+    fun record(nanos: Long) {
+        val micros = nanos / 1000
+        val bucket = if (micros <= 0) {
+            0
+        } else {
+            minOf(64 - java.lang.Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1)
+        }
+        buckets.incrementAndGet(bucket)
+        totalNanos.add(nanos)
+    }
+
+    /**
+     * Report the count, the total time and every non-empty bucket.
+     *
+     * Values are read one by one, so they may be slightly inconsistent with each other while
+     * durations are being recorded.
+     *
+     * @param prefix prepended to each value name.
+     * @param action called with each name and value.
+     */
+    fun forEachValue(prefix: String, action: (String, Long) -> Unit) {
+        val counts = LongArray(BUCKET_COUNT) { buckets.get(it) }
+        action("$prefix.count", counts.sum())
+        action("$prefix.total_us", totalNanos.sum() / 1000)
+        for (i in 0 until BUCKET_COUNT) {
+            if (counts[i] != 0L) {
+                action("$prefix.${bucketName(i)}", counts[i])
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * Buckets up to 2^20 us (about 1 second), plus the overflow bucket.
+         */
+        private const val BUCKET_COUNT = 22
+
+        private fun bucketName(bucket: Int): String {
+            return if (bucket == BUCKET_COUNT - 1) {
+                "ge_${1L shl (BUCKET_COUNT - 2)}us"
+            } else {
+                "lt_${1L shl bucket}us"
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import android.content.Context
+import org.json.JSONException
+import org.json.JSONObject
+import org.khronos.openxr.runtime_broker.utils.BrokerContract
+import org.khronos.openxr.runtime_broker.utils.BrokerLog
+import org.khronos.openxr.runtime_broker.utils.RuntimeData
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.nio.channels.FileChannel
+
+/**
+ * A RuntimeChooser that reads the active runtime from a JSON manifest file, for runtimes that are
+ * part of the system image rather than an installed package.
+ *
+ * The manifest follows the desktop OpenXR runtime manifest layout, with optional Android fields:
+ * <pre>
+ * {
+ *     "file_format_version": "1.0.0",
+ *     "runtime": {
+ *         "library_path": "/vendor/lib64/libopenxr_oem.so",
+ *         "functions": {
+ *             "xrNegotiateLoaderRuntimeInterface": "oem_xrNegotiateLoaderRuntimeInterface"
+ *         },
+ *         "package_name": "com.example.oem.openxr",
+ *         "major_version": 1,
+ *         "abi": "arm64-v8a"
+ *     }
+ * }
+ * </pre>
+ * A relative "library_path" is relative to the manifest's directory. "package_name" defaults to
+ * an empty string and "major_version" to 1. A runtime without "abi" is used for every ABI that has
+ * no runtime of its own. Several runtimes (one per ABI, for instance) can be listed in a
+ * "runtimes" array instead of the "runtime" object.
+ *
+ * The file is memory-mapped and parsed once into an index, and parsed again only when its
+ * modification time or size changes, so a lookup costs one stat() and a map lookup. When a
+ * changed file is parsed again, [RuntimeCacheGeneration] is invalidated, so results cached from
+ * the old manifest are dropped and clients are notified. Answers may only be cached for
+ * [checkIntervalMillis], so that a broker cache still looks at the file now and then.
+ *
+ * @param manifestFile the manifest to read.
+ * @param brokerType the broker type to put in the returned RuntimeData.
+ * @param checkIntervalMillis how long an answer may be cached before the file is checked again.
+ */
+class ManifestRuntimeChooser @JvmOverloads constructor(
+    private val manifestFile: File,
+    private val brokerType: BrokerContract.BrokerType = BrokerContract.BrokerType.SystemRuntimeBroker,
+    private val checkIntervalMillis: Long = CHECK_INTERVAL_MILLIS
+) : ExpiringRuntimeChooser {
+    private data class IndexKey(val majorVersion: Int, val abi: String?)
+
+    /**
+     * The parsed manifest, and the file state it was parsed from.
+     */
+    private class Manifest(
+        val lastModified: Long,
+        val length: Long,
+        val runtimes: Map<IndexKey, RuntimeData>
+    )
+
+    @Volatile
+    private var manifest: Manifest? = null
+
+    override fun getActiveRuntime(context: Context, majorVersion: Int, abi: String): RuntimeData? {
+        return findRuntime(getManifest().runtimes, majorVersion, abi)
+    }
+
+    override fun getActiveRuntimes(
+        context: Context,
+        majorVersions: IntArray,
+        abis: Array<String>
+    ): Array<RuntimeData?> {
+        val runtimes = getManifest().runtimes
+        return Array(majorVersions.size * abis.size) { index ->
+            findRuntime(runtimes, majorVersions[index / abis.size], abis[index % abis.size])
+        }
+    }
+
+    override fun getExpiringRuntimes(
+        context: Context,
+        majorVersions: IntArray,
+        abis: Array<String>,
+        cacheLifetimesMillis: LongArray
+    ): Array<RuntimeData?> {
+        val runtimes = getActiveRuntimes(context, majorVersions, abis)
+        cacheLifetimesMillis.fill(checkIntervalMillis)
+        return runtimes
+    }
+
+    private fun findRuntime(runtimes: Map<IndexKey, RuntimeData>, majorVersion: Int, abi: String): RuntimeData? {
+        return runtimes[IndexKey(majorVersion, abi)] ?: runtimes[IndexKey(majorVersion, null)]
+    }
+
+    private fun getManifest(): Manifest {
+        val lastModified = manifestFile.lastModified()
+        val length = manifestFile.length()
+        manifest?.let {
+            if (it.lastModified == lastModified && it.length == length) {
+                return it
+            }
+        }
+        var previous: Manifest? = null
+        val loaded = synchronized(this) {
+            previous = manifest
+            previous?.let {
+                if (it.lastModified == lastModified && it.length == length) {
+                    return it
+                }
+            }
+            // lastModified() is 0 if the file does not exist.
+            val runtimes = if (lastModified == 0L) emptyMap() else load()
+            Manifest(lastModified, length, runtimes).also { manifest = it }
+        }
+        if (previous != null) {
+            // Outside the lock: listeners notify clients.
+            RuntimeCacheGeneration.invalidate()
+        }
+        return loaded
+    }
+
+    private fun load(): Map<IndexKey, RuntimeData> {
+        val text = try {
+            FileInputStream(manifestFile).use { stream ->
+                val channel = stream.channel
+                val buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                Charsets.UTF_8.decode(buffer).toString()
+            }
+        } catch (e: IOException) {
+            BrokerLog.w(TAG) { "Could not read runtime manifest $manifestFile: ${e.message}" }
+            return emptyMap()
+        }
+        return try {
+            parse(text)
+        } catch (e: JSONException) {
+            BrokerLog.w(TAG) { "Invalid runtime manifest $manifestFile: ${e.message}" }
+            emptyMap()
+        }
+    }
+
+    private fun parse(text: String): Map<IndexKey, RuntimeData> {
+        val root = JSONObject(text)
+        val runtimes = HashMap<IndexKey, RuntimeData>()
+        val array = root.optJSONArray("runtimes")
+        if (array != null) {
+            for (i in 0 until array.length()) {
+                addRuntime(runtimes, array.getJSONObject(i))
+            }
+        } else {
+            addRuntime(runtimes, root.getJSONObject("runtime"))
+        }
+        BrokerLog.i(TAG) { "Loaded ${runtimes.size} runtime(s) from $manifestFile" }
+        return runtimes
+    }
+
+    private fun addRuntime(runtimes: MutableMap<IndexKey, RuntimeData>, runtime: JSONObject) {
+        var library = File(runtime.getString("library_path"))
+        if (!library.isAbsolute) {
+            library = File(manifestFile.absoluteFile.parentFile, library.path)
+        }
+        val functions = HashMap<String, String>()
+        runtime.optJSONObject("functions")?.let { json ->
+            for (function in json.keys()) {
+                functions[function] = json.getString(function)
+            }
+        }
+        val majorVersion = runtime.optInt("major_version", 1)
+        val abi = if (runtime.has("abi")) runtime.getString("abi") else null
+        val key = IndexKey(majorVersion, abi)
+        if (runtimes.containsKey(key)) {
+            BrokerLog.w(TAG) { "Ignoring duplicate runtime for major version $majorVersion, ABI $abi" }
+            return
+        }
+        runtimes[key] = RuntimeData(
+            runtime.optString("package_name", ""),
+            library.parent ?: "",
+            library.name,
+            majorVersion,
+            functions,
+            brokerType
+        )
+    }
+
+    companion object {
+        private const val TAG = "ManifestRuntimeChooser"
+
+        /**
+         * How long answers may be cached by default, in milliseconds.
+         */
+        const val CHECK_INTERVAL_MILLIS = 1_000L
+    }
+}
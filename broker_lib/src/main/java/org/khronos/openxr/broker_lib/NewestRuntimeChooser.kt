@@ -0,0 +1,29 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import android.content.Context
+import android.content.pm.PackageManager
+import org.khronos.openxr.runtime_broker.utils.RuntimeChooser
+import org.khronos.openxr.runtime_broker.utils.RuntimeData
+
+/**
+ * A RuntimeChooser that picks the most recently installed or updated runtime package.
+ */
+class NewestRuntimeChooser : RuntimeChooser {
+    override fun getActiveRuntime(context: Context, majorVersion: Int, abi: String): RuntimeData? {
+        val runtimes = RuntimeRegistry.getInstance(context).getRuntimes(majorVersion, abi)
+        if (runtimes.size <= 1) {
+            return runtimes.firstOrNull()
+        }
+        return runtimes.maxByOrNull { getLastUpdateTime(context, it.packageName) }
+    }
+
+    private fun getLastUpdateTime(context: Context, packageName: String): Long {
+        return try {
+            context.packageManager.getPackageInfo(packageName, 0).lastUpdateTime
+        } catch (e: PackageManager.NameNotFoundException) {
+            Long.MIN_VALUE
+        }
+    }
+}
@@ -6,13 +6,11 @@
 package org.khronos.openxr.broker_lib
 
 import android.content.Context
-import android.content.Intent
-import android.content.pm.PackageManager
-import android.util.Log
 import androidx.annotation.Keep
 import androidx.annotation.NonNull
+import org.khronos.openxr.runtime_broker.utils.BrokerLog
+import org.khronos.openxr.runtime_broker.utils.BrokerTrace
 import org.khronos.openxr.runtime_broker.utils.RuntimeData
-import java.util.*
 
 /**
  * Helper utilities for finding OpenXR runtimes.
@@ -26,6 +24,9 @@ import java.util.*
  * </intent>
  * </queries>
 `</pre> *
+ *
+ * Lookups are answered from the process-wide [RuntimeRegistry], which is kept up to date from
+ * package broadcasts instead of scanning PackageManager on every call.
  */
 object OpenXRLoaderUtils {
     private const val TAG = "OpenXRLoaderUtils"
@@ -50,38 +51,14 @@ object OpenXRLoaderUtils {
      * OpenXR runtimes.
      */
     fun findOpenXRRuntimes(context: Context, @NonNull abi: String): MutableList<RuntimeData>? {
-        val packageManager = context.packageManager
-        val intent = Intent(serviceName)
-        val resolutions = packageManager.queryIntentServices(
-            intent,
-            PackageManager.GET_META_DATA + PackageManager.GET_SHARED_LIBRARY_FILES
-        )
-        if (resolutions.size == 0) {
-            Log.w(TAG, "got no services for our intent.")
-            return null
-        }
-        val runtimes = ArrayList<RuntimeData>()
-        for (resolveInfo in resolutions) {
-            Log.i(
-                TAG, "Considering intent service resolution: " +
-                        resolveInfo.serviceInfo.applicationInfo.packageName
-            )
-            val runtimeData = RuntimeData.fromIntentResolveInfo(resolveInfo, abi)
-            runtimeData ?: continue
-            Log.i(
-                TAG, String.format(
-                    "Runtime SO for %s is '%s', OpenXR major version %d",
-                    resolveInfo.serviceInfo.applicationInfo.packageName,
-                    runtimeData.soFilename, runtimeData.majorVersion
-                )
-            )
-            runtimes.add(runtimeData)
+        val runtimes = BrokerTrace.section(BrokerTrace.FIND_RUNTIMES) {
+            RuntimeRegistry.getInstance(context).getRuntimes(abi)
         }
         if (runtimes.isEmpty()) {
-            Log.w(TAG, "No OpenXR runtimes found.")
+            BrokerLog.w(TAG) { "No OpenXR runtimes found." }
             return null
         }
-        return runtimes
+        return ArrayList(runtimes)
     }
 
     /**
@@ -98,10 +75,11 @@ object OpenXRLoaderUtils {
         majorVersion: Int,
         @NonNull abi: String
     ): List<RuntimeData>? {
-        val runtimes = findOpenXRRuntimes(context, abi) ?: return null
-        runtimes.removeIf { data: RuntimeData -> data.majorVersion != majorVersion.toLong() }
+        val runtimes = BrokerTrace.section(BrokerTrace.FIND_RUNTIMES) {
+            RuntimeRegistry.getInstance(context).getRuntimes(majorVersion, abi)
+        }
         if (runtimes.isEmpty()) {
-            Log.w(TAG, String.format("No OpenXR runtimes of major version %d found.", majorVersion))
+            BrokerLog.w(TAG) { "No OpenXR runtimes of major version $majorVersion found." }
             return null
         }
         return runtimes
@@ -2,59 +2,56 @@
 // SPDX-License-Identifier: BSL-1.0
 package org.khronos.openxr.broker_lib
 
-import android.os.Build
 import org.khronos.openxr.runtime_broker.utils.BrokerContract
 
 enum class TableType {
-    ActiveRuntime, Functions
+    ActiveRuntime, Functions, Stats, BulkActiveRuntime
 }
 
 /**
  * All data from a runtime broker content-provider URI, parsed out.
  */
-class ParsedBrokerUri {
-
+class ParsedBrokerUri(
     /**
      * Which authority was queried.
      */
     @JvmField
-    var brokerType: BrokerContract.BrokerType = BrokerContract.BrokerType.RuntimeBroker
+    val brokerType: BrokerContract.BrokerType,
 
     /**
      * Which type of table is requested.
      */
     @JvmField
-    var tableType = TableType.ActiveRuntime
+    val tableType: TableType,
 
     /**
-     * OpenXR major version
+     * OpenXR major version, 0 for tableType == TableType.Stats or TableType.BulkActiveRuntime.
      */
     @JvmField
-    var majorVer = 0
+    val majorVer: Int,
 
     /**
-     * The package name, only valid for tableType == TableType.Functions.
+     * The ABI to get the runtime path for, empty for tableType == TableType.Stats or
+     * TableType.BulkActiveRuntime.
      */
     @JvmField
-    var packageName: String? = null
+    val abi: String,
 
     /**
-     * The ABI to get the runtime path for.
+     * The package name, only valid for tableType == TableType.Functions.
      */
     @JvmField
-    var abi: String = Build.SUPPORTED_ABIS[0]
+    val packageName: String?,
 
     /**
      * Row ID - if null, that implies the URI was for a dir.
      */
     @JvmField
-    var row: Int? = null
-
+    val row: Int?
+) {
     /**
      * True if the URI is for the directory, and not just a single row.
      */
     val isDir: Boolean
         get() = row == null
-
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import java.security.InvalidParameterException
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Compiles cursor projections into column plans, caching one plan per distinct projection.
+ *
+ * A plan has one entry per projected column, holding that column's index in the table's
+ * column list, so cursor builders can fill rows with a switch instead of a map lookup per cell.
+ *
+ * @param columns all column names of the table, in the order used for plan entries.
+ */
+internal class ProjectionPlanCache(private val columns: Array<String>) {
+    /**
+     * Wraps a projection so it can be used as a map key by content.
+     */
+    private class ProjectionKey(val projection: Array<String>) {
+        private val hash = projection.contentHashCode()
+
+        override fun hashCode(): Int = hash
+
+        override fun equals(other: Any?): Boolean =
+            other is ProjectionKey && projection.contentEquals(other.projection)
+    }
+
+    private val plans = ConcurrentHashMap<ProjectionKey, IntArray>()
+
+    /**
+     * Get the column plan for a projection.
+     *
+     * @param projection the columns requested by the client.
+     * @return an array of column indices, one per projected column. Do not modify.
+     * @throws InvalidParameterException if the projection contains an unknown column.
+     */
+    fun getPlan(projection: Array<String>): IntArray {
+        val key = ProjectionKey(projection)
+        plans[key]?.let { return it }
+        val plan = compile(projection)
+        // Clients use a handful of projections: don't let a misbehaving one grow the cache.
+        if (plans.size < MAX_PLANS) {
+            plans.putIfAbsent(ProjectionKey(projection.copyOf()), plan)
+        }
+        return plan
+    }
+
+    private fun compile(projection: Array<String>): IntArray {
+        return IntArray(projection.size) { i ->
+            val column = columns.indexOf(projection[i])
+            if (column < 0) {
+                throw InvalidParameterException("Invalid column name passed: ${projection[i]}")
+            }
+            column
+        }
+    }
+
+    companion object {
+        private const val MAX_PLANS = 16
+    }
+}
@@ -0,0 +1,81 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Process-wide generation counter for cached runtime broker results.
+ *
+ * Anything that may change which runtime a RuntimeChooser returns (a runtime package being
+ * installed, updated or removed, or the user changing their selection) must call [invalidate].
+ * [RuntimeRegistry] does so for runtime packages: changes to other packages leave cached results
+ * alone. [ManifestRuntimeChooser] does so when its manifest changes. Cached results tagged with an older generation are then ignored, and invalidation
+ * listeners (such as brokers notifying their clients) are called with the [Reason].
+ */
+object RuntimeCacheGeneration {
+    /**
+     * What changed.
+     */
+    enum class Reason {
+        /**
+         * Runtime packages were installed, updated or removed, or a runtime manifest changed.
+         */
+        Packages,
+
+        /**
+         * The user selected another runtime. The installed runtimes are the same.
+         */
+        Selection
+    }
+
+    /**
+     * Called after an invalidation.
+     */
+    fun interface InvalidationListener {
+        fun onInvalidated(reason: Reason)
+    }
+
+    private val generation = AtomicLong()
+    private val listeners = CopyOnWriteArrayList<InvalidationListener>()
+
+    /**
+     * The current generation.
+     */
+    @JvmStatic
+    val current: Long
+        get() = generation.get()
+
+    /**
+     * Mark all previously cached results as stale.
+     *
+     * @param reason what changed, for the listeners.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun invalidate(reason: Reason = Reason.Packages) {
+        generation.incrementAndGet()
+        for (listener in listeners) {
+            listener.onInvalidated(reason)
+        }
+    }
+
+    /**
+     * Call a listener, on the invalidating thread, after every invalidation.
+     *
+     * @param listener the listener, which must be quick.
+     */
+    @JvmStatic
+    fun addInvalidationListener(listener: InvalidationListener) {
+        listeners.add(listener)
+    }
+
+    /**
+     * Stop calling a listener added with [addInvalidationListener].
+     */
+    @JvmStatic
+    fun removeInvalidationListener(listener: InvalidationListener) {
+        listeners.remove(listener)
+    }
+}
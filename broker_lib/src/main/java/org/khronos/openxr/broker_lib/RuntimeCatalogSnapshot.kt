@@ -0,0 +1,149 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import android.util.AtomicFile
+import android.util.Log
+import org.khronos.openxr.runtime_broker.utils.RuntimeData
+import org.khronos.openxr.runtime_broker.utils.RuntimeDescriptor
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * The runtimes of one package, as recorded in a snapshot.
+ *
+ * @param versionCode the package's long version code when it was resolved.
+ * @param lastUpdateTime the package's last update time when it was resolved.
+ * @param runtimes the runtimes the package provides.
+ */
+internal class SnapshotPackage(
+    val versionCode: Long,
+    val lastUpdateTime: Long,
+    val runtimes: List<RuntimeData>
+)
+
+/**
+ * Reads and writes the runtime catalog snapshot file of [RuntimeRegistry].
+ *
+ * All integers are big-endian. The file contains a magic number ("OXRC"), a format version and a
+ * package count, then for each package: its name (a byte length and UTF-8 bytes), version code,
+ * last update time, runtime count, and each runtime as a length-prefixed [RuntimeDescriptor].
+ */
+internal object RuntimeCatalogSnapshot {
+    private const val TAG = "RuntimeCatalogSnapshot"
+    private const val MAGIC = 0x4F585243
+    private const val FORMAT_VERSION = 1
+
+    /**
+     * Read a snapshot through a read-only memory mapping.
+     *
+     * @return the packages, in the order they were written, or null if there is no usable
+     * snapshot.
+     */
+    fun read(file: AtomicFile): Map<String, SnapshotPackage>? {
+        try {
+            file.openRead().use { stream ->
+                val channel = stream.channel
+                return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()))
+            }
+        } catch (e: FileNotFoundException) {
+            return null
+        } catch (e: IOException) {
+            Log.w(TAG, "Ignoring unreadable runtime catalog snapshot: ${e.message}")
+            return null
+        } catch (e: BufferUnderflowException) {
+            Log.w(TAG, "Ignoring truncated runtime catalog snapshot")
+            return null
+        }
+    }
+
+    /**
+     * Replace the snapshot. Errors are logged, and leave the previous snapshot in place.
+     */
+    fun write(file: AtomicFile, packages: Map<String, SnapshotPackage>) {
+        val encoded = encode(packages)
+        val stream = try {
+            file.startWrite()
+        } catch (e: IOException) {
+            Log.w(TAG, "Could not write runtime catalog snapshot: ${e.message}")
+            return
+        }
+        try {
+            stream.write(encoded)
+            file.finishWrite(stream)
+        } catch (e: IOException) {
+            Log.w(TAG, "Could not write runtime catalog snapshot: ${e.message}")
+            file.failWrite(stream)
+        }
+    }
+
+    private fun encode(packages: Map<String, SnapshotPackage>): ByteArray {
+        val names = packages.keys.map { it.toByteArray(Charsets.UTF_8) }
+        val descriptors = packages.values.map { entry ->
+            entry.runtimes.map { RuntimeDescriptor.encode(it) }
+        }
+        var size = 3 * Int.SIZE_BYTES
+        for (i in names.indices) {
+            size += Int.SIZE_BYTES + names[i].size + 2 * Long.SIZE_BYTES + Int.SIZE_BYTES
+            for (descriptor in descriptors[i]) {
+                size += Int.SIZE_BYTES + descriptor.size
+            }
+        }
+        val buffer = ByteBuffer.allocate(size)
+        buffer.putInt(MAGIC)
+        buffer.putInt(FORMAT_VERSION)
+        buffer.putInt(packages.size)
+        for ((i, entry) in packages.values.withIndex()) {
+            buffer.putInt(names[i].size)
+            buffer.put(names[i])
+            buffer.putLong(entry.versionCode)
+            buffer.putLong(entry.lastUpdateTime)
+            buffer.putInt(descriptors[i].size)
+            for (descriptor in descriptors[i]) {
+                buffer.putInt(descriptor.size)
+                buffer.put(descriptor)
+            }
+        }
+        return buffer.array()
+    }
+
+    private fun decode(buffer: ByteBuffer): Map<String, SnapshotPackage>? {
+        if (buffer.int != MAGIC || buffer.int != FORMAT_VERSION) {
+            Log.i(TAG, "Ignoring runtime catalog snapshot of another format")
+            return null
+        }
+        val packageCount = checkCount(buffer, buffer.int)
+        val packages = LinkedHashMap<String, SnapshotPackage>()
+        repeat(packageCount) {
+            val nameBytes = ByteArray(checkCount(buffer, buffer.int))
+            buffer.get(nameBytes)
+            val versionCode = buffer.long
+            val lastUpdateTime = buffer.long
+            val runtimeCount = checkCount(buffer, buffer.int)
+            val runtimes = ArrayList<RuntimeData>(runtimeCount)
+            repeat(runtimeCount) {
+                val length = checkCount(buffer, buffer.int)
+                val descriptor = buffer.slice()
+                descriptor.limit(length)
+                runtimes.add(RuntimeDescriptor.decode(descriptor, null))
+                buffer.position(buffer.position() + length)
+            }
+            packages[String(nameBytes, Charsets.UTF_8)] =
+                SnapshotPackage(versionCode, lastUpdateTime, runtimes)
+        }
+        return packages
+    }
+
+    /**
+     * Check that a count or length read from the snapshot is at most the bytes remaining.
+     */
+    private fun checkCount(buffer: ByteBuffer, count: Int): Int {
+        if (count < 0 || count > buffer.remaining()) {
+            throw IOException("Invalid count $count in runtime catalog snapshot")
+        }
+        return count
+    }
+}
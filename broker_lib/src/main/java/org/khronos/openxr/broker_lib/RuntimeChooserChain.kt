@@ -0,0 +1,178 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import android.content.Context
+import android.os.SystemClock
+import org.khronos.openxr.runtime_broker.utils.BrokerLog
+import org.khronos.openxr.runtime_broker.utils.RuntimeChooser
+import org.khronos.openxr.runtime_broker.utils.RuntimeData
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.LongSupplier
+
+/**
+ * A RuntimeChooser that asks each of its links in turn, and returns the first runtime found.
+ *
+ * A link can remember that it found nothing for a while, so that an expensive link (another
+ * broker, for instance) is not asked again on every lookup. Remembered results are also dropped
+ * when [RuntimeCacheGeneration] is invalidated. An exception from a link is logged, reported to
+ * the failure listener, and treated as finding nothing.
+ *
+ * An answer that depends on a link with a not-found TTL (found by that link, or by a later one)
+ * may change once that TTL ends, so [getExpiringRuntimes] limits its cache lifetime to the TTL.
+ *
+ * @param links the choosers to ask, in order.
+ * @param clock the time source for not-found TTLs, in milliseconds.
+ * @param failureListener told about each exception from a link.
+ */
+class RuntimeChooserChain @JvmOverloads constructor(
+    private val links: List<Link>,
+    private val clock: LongSupplier = LongSupplier { SystemClock.elapsedRealtime() },
+    private val failureListener: FailureListener? = null
+) : ExpiringRuntimeChooser {
+    /**
+     * One chooser in a chain.
+     *
+     * @param chooser the chooser to ask.
+     * @param notFoundTtlMillis how long to remember that the chooser found nothing, or 0 to
+     * always ask it.
+     */
+    class Link @JvmOverloads constructor(
+        val chooser: RuntimeChooser,
+        val notFoundTtlMillis: Long = 0
+    )
+
+    /**
+     * Called with each exception thrown by a link.
+     */
+    fun interface FailureListener {
+        fun onLinkFailed(link: Int, exception: RuntimeException)
+    }
+
+    private data class NotFoundKey(val link: Int, val majorVersion: Int, val abi: String)
+
+    private class NotFound(val generation: Long, val expiresAtMillis: Long)
+
+    private val notFound = ConcurrentHashMap<NotFoundKey, NotFound>()
+
+    override fun getActiveRuntime(context: Context, majorVersion: Int, abi: String): RuntimeData? {
+        for (i in links.indices) {
+            val key = NotFoundKey(i, majorVersion, abi)
+            val generation = RuntimeCacheGeneration.current
+            val now = clock.asLong
+            if (getRememberedNotFound(key, generation, now) != null) {
+                continue
+            }
+            val runtime = try {
+                links[i].chooser.getActiveRuntime(context, majorVersion, abi)
+            } catch (e: RuntimeException) {
+                reportFailure(i, e)
+                null
+            }
+            if (runtime != null) {
+                return runtime
+            }
+            rememberNotFound(key, generation, now)
+        }
+        return null
+    }
+
+    override fun getActiveRuntimes(
+        context: Context,
+        majorVersions: IntArray,
+        abis: Array<String>
+    ): Array<RuntimeData?> {
+        return getExpiringRuntimes(context, majorVersions, abis, LongArray(majorVersions.size * abis.size))
+    }
+
+    /**
+     * Ask each link for all combinations still missing, with one batch call per link.
+     */
+    override fun getExpiringRuntimes(
+        context: Context,
+        majorVersions: IntArray,
+        abis: Array<String>,
+        cacheLifetimesMillis: LongArray
+    ): Array<RuntimeData?> {
+        val runtimes = arrayOfNulls<RuntimeData>(majorVersions.size * abis.size)
+        require(cacheLifetimesMillis.size == runtimes.size) { "One cache lifetime per combination is needed" }
+        cacheLifetimesMillis.fill(Long.MAX_VALUE)
+        for (i in links.indices) {
+            val ttl = links[i].notFoundTtlMillis
+            val generation = RuntimeCacheGeneration.current
+            val now = clock.asLong
+            var needed = false
+            for (v in majorVersions.indices) {
+                for (a in abis.indices) {
+                    val index = v * abis.size + a
+                    if (runtimes[index] != null) {
+                        continue
+                    }
+                    val remembered = getRememberedNotFound(NotFoundKey(i, majorVersions[v], abis[a]), generation, now)
+                    if (remembered != null) {
+                        // Passed over until the link is asked again.
+                        limitLifetime(cacheLifetimesMillis, index, remembered.expiresAtMillis - now)
+                    } else {
+                        needed = true
+                    }
+                }
+            }
+            if (!needed) {
+                continue
+            }
+            val found = try {
+                links[i].chooser.getActiveRuntimes(context, majorVersions, abis)
+            } catch (e: RuntimeException) {
+                reportFailure(i, e)
+                arrayOfNulls(runtimes.size)
+            }
+            for (v in majorVersions.indices) {
+                for (a in abis.indices) {
+                    val index = v * abis.size + a
+                    if (runtimes[index] != null) {
+                        continue
+                    }
+                    if (ttl > 0) {
+                        limitLifetime(cacheLifetimesMillis, index, ttl)
+                    }
+                    val runtime = found.getOrNull(index)
+                    if (runtime != null) {
+                        runtimes[index] = runtime
+                    } else {
+                        rememberNotFound(NotFoundKey(i, majorVersions[v], abis[a]), generation, now)
+                    }
+                }
+            }
+        }
+        return runtimes
+    }
+
+    private fun limitLifetime(cacheLifetimesMillis: LongArray, index: Int, lifetimeMillis: Long) {
+        cacheLifetimesMillis[index] = minOf(cacheLifetimesMillis[index], lifetimeMillis)
+    }
+
+    private fun getRememberedNotFound(key: NotFoundKey, generation: Long, now: Long): NotFound? {
+        val entry = notFound[key] ?: return null
+        if (entry.generation == generation && now < entry.expiresAtMillis) {
+            return entry
+        }
+        notFound.remove(key, entry)
+        return null
+    }
+
+    private fun rememberNotFound(key: NotFoundKey, generation: Long, now: Long) {
+        val ttl = links[key.link].notFoundTtlMillis
+        if (ttl > 0) {
+            notFound[key] = NotFound(generation, now + ttl)
+        }
+    }
+
+    private fun reportFailure(link: Int, exception: RuntimeException) {
+        BrokerLog.w(TAG, exception) { "Runtime chooser link $link failed" }
+        failureListener?.onLinkFailed(link, exception)
+    }
+
+    companion object {
+        private const val TAG = "RuntimeChooserChain"
+    }
+}
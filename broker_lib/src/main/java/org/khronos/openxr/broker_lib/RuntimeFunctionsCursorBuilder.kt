@@ -3,70 +3,45 @@
 package org.khronos.openxr.broker_lib
 
 import android.database.MatrixCursor
-import org.khronos.openxr.broker_lib.RuntimeFunctionsCursorBuilder.ColumnFiller
 import org.khronos.openxr.runtime_broker.utils.BrokerContract.Functions.Columns
+import org.khronos.openxr.runtime_broker.utils.FunctionTable
 import org.khronos.openxr.runtime_broker.utils.RuntimeData
-import java.security.InvalidParameterException
-import java.util.*
-import java.util.stream.Collectors
 
 internal class RuntimeFunctionsCursorBuilder(runtime: RuntimeData?, projection: Array<String>) {
     companion object {
-        private val columnFillerHashMap = HashMap<String, ColumnFiller?>()
-
-        init {
-            columnFillerHashMap[Columns._ID] =
-                ColumnFiller { item: Int, _: Entry -> item }
-            columnFillerHashMap[Columns.FUNCTION_NAME] =
-                ColumnFiller { _: Int, data: Entry -> data.functionName }
-            columnFillerHashMap[Columns.SYMBOL_NAME] =
-                ColumnFiller { _: Int, data: Entry -> data.symbolName }
-        }
+        // Indices into the column list passed to planCache.
+        private const val COLUMN_ID = 0
+        private const val COLUMN_FUNCTION_NAME = 1
+        private const val COLUMN_SYMBOL_NAME = 2
+
+        private val planCache = ProjectionPlanCache(
+            arrayOf(
+                Columns._ID,
+                Columns.FUNCTION_NAME,
+                Columns.SYMBOL_NAME
+            )
+        )
     }
 
-    private val columnFillers = ArrayList<ColumnFiller>()
-    val cursor: MatrixCursor
-    private var functions: List<Entry> = ArrayList()
+    private val plan: IntArray = planCache.getPlan(projection)
+    private val functions: FunctionTable = runtime?.functionTable ?: FunctionTable.EMPTY
+    val cursor: MatrixCursor = MatrixCursor(projection, functions.size())
+
     fun addRow(itemNum: Int) {
-        if (itemNum >= functions.size) {
+        if (itemNum < 0 || itemNum >= functions.size()) {
             return
         }
-        val entry = functions[itemNum]
-        val row = ArrayList<Any?>()
-        for (filler in columnFillers) {
-            row.add(filler.getColumnData(itemNum, entry))
+        val row = cursor.newRow()
+        for (column in plan) {
+            when (column) {
+                COLUMN_ID -> row.add(itemNum)
+                COLUMN_FUNCTION_NAME -> row.add(functions.getFunctionName(itemNum))
+                COLUMN_SYMBOL_NAME -> row.add(functions.getSymbolName(itemNum))
+            }
         }
-        cursor.addRow(row)
     }
 
     fun addAllRows() {
-        if (functions.isEmpty()) {
-            return
-        }
-        for (i in functions.indices) addRow(i)
-    }
-
-    private fun interface ColumnFiller {
-        fun getColumnData(itemNum: Int, data: Entry): Any?
-    }
-
-    private class Entry(val functionName: String, val symbolName: String)
-
-    init {
-        if (runtime != null) {
-            functions = runtime.functions
-                .entries
-                .stream()
-                .sorted()
-                .filter { entry: Map.Entry<String?, String?> -> entry.key != null && entry.value != null }
-                .map { entry: Map.Entry<String, String> -> Entry(entry.key, entry.value) }
-                .collect(Collectors.toList())
-        }
-        for (column in projection) {
-            val filler = columnFillerHashMap.getOrDefault(column, null)
-                ?: throw InvalidParameterException("Invalid column name passed: $column")
-            columnFillers.add(filler)
-        }
-        cursor = MatrixCursor(projection)
+        for (i in 0 until functions.size()) addRow(i)
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import android.os.SystemClock
+import org.khronos.openxr.runtime_broker.utils.BrokerContract
+import org.khronos.openxr.runtime_broker.utils.RuntimeData
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Identifies one active-runtime lookup.
+ */
+internal data class RuntimeQueryKey(
+    val brokerType: BrokerContract.BrokerType,
+    val majorVer: Int,
+    val abi: String
+)
+
+/**
+ * A cached chooser result. A null runtime is a cached "no runtime" answer.
+ *
+ * @param expiresAtMillis when the result must be looked up again, on the
+ * SystemClock.elapsedRealtime() clock, or Long.MAX_VALUE to keep it for the whole generation.
+ */
+internal class CachedRuntime(val generation: Long, val runtime: RuntimeData?, val expiresAtMillis: Long)
+
+/**
+ * Memoizes RuntimeChooser results, including negative ones, tagged with the
+ * [RuntimeCacheGeneration] that was current when the lookup started, and optionally with a
+ * lifetime from an [ExpiringRuntimeChooser].
+ */
+internal class RuntimeQueryCache {
+    private val entries = ConcurrentHashMap<RuntimeQueryKey, CachedRuntime>()
+
+    /**
+     * Get a cached result.
+     *
+     * @param key the lookup to find.
+     * @param generation the current generation.
+     * @return the cached result, or null if there is none for this generation, or it expired.
+     */
+    fun get(key: RuntimeQueryKey, generation: Long): CachedRuntime? {
+        val entry = entries[key] ?: return null
+        if (entry.generation != generation) {
+            return null
+        }
+        if (entry.expiresAtMillis != Long.MAX_VALUE && SystemClock.elapsedRealtime() >= entry.expiresAtMillis) {
+            return null
+        }
+        return entry
+    }
+
+    /**
+     * Store a result, unless a result from a newer generation is already stored.
+     *
+     * @param key the lookup that was performed.
+     * @param generation the generation that was current before the lookup started.
+     * @param runtime the chooser result, possibly null.
+     * @param lifetimeMillis how long the result may be used, or Long.MAX_VALUE to keep it for the
+     * whole generation.
+     */
+    fun put(key: RuntimeQueryKey, generation: Long, runtime: RuntimeData?, lifetimeMillis: Long = Long.MAX_VALUE) {
+        if (lifetimeMillis <= 0) {
+            return
+        }
+        val expiresAtMillis = if (lifetimeMillis == Long.MAX_VALUE) {
+            Long.MAX_VALUE
+        } else {
+            SystemClock.elapsedRealtime() + lifetimeMillis
+        }
+        entries.compute(key) { _, old ->
+            if (old != null && old.generation > generation) old else CachedRuntime(generation, runtime, expiresAtMillis)
+        }
+    }
+}
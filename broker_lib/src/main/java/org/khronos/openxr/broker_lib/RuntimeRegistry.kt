@@ -0,0 +1,382 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.content.pm.PackageInfo
+import android.content.pm.PackageManager
+import android.content.pm.ResolveInfo
+import android.os.Build
+import android.os.Handler
+import android.os.HandlerThread
+import android.util.AtomicFile
+import androidx.annotation.VisibleForTesting
+import org.khronos.openxr.runtime_broker.utils.BrokerLog
+import org.khronos.openxr.runtime_broker.utils.BrokerTrace
+import org.khronos.openxr.runtime_broker.utils.RuntimeData
+import java.io.File
+
+/**
+ * Process-wide, incrementally updated index of installed OpenXR runtimes.
+ *
+ * The first use resolves every OpenXR runtime service. After that, package broadcasts cause only
+ * the affected packages to be resolved again. Broadcasts are debounced, so a burst of package
+ * updates (an app store updating many apps, for instance) is handled as a single batch. Only a
+ * batch that adds, changes or removes a runtime invalidates [RuntimeCacheGeneration], so installing
+ * other apps keeps broker and client caches.
+ *
+ * Lookups read an immutable per-ABI index and do not touch PackageManager.
+ *
+ * The catalog is also persisted as a snapshot in the no-backup files directory. When the process
+ * starts again, the registry answers from the snapshot straight away, and resolves again in the
+ * background only those packages that were installed, removed, or updated (by version code or last
+ * update time) since the snapshot was written.
+ */
+class RuntimeRegistry private constructor(context: Context) {
+    /**
+     * The runtimes for one ABI, indexed for lookup.
+     */
+    private class AbiIndex(val byPackage: Map<String, List<RuntimeData>>) {
+        val all: List<RuntimeData> = byPackage.values.flatten()
+        val byMajorVersion: Map<Long, List<RuntimeData>> = all.groupBy { it.majorVersion }
+    }
+
+    private val appContext: Context = context.applicationContext
+    private val handlerThread = HandlerThread(TAG).apply { start() }
+    private val handler = Handler(handlerThread.looper)
+    private val snapshotFile = AtomicFile(File(appContext.noBackupFilesDir, SNAPSHOT_FILE_NAME))
+
+    private val lock = Any()
+
+    /**
+     * Service resolutions per package, in discovery order. Guarded by lock.
+     */
+    private val resolutions = LinkedHashMap<String, List<ResolveInfo>>()
+
+    /**
+     * Packages known only from the snapshot, not yet resolved in this process. Guarded by lock.
+     */
+    private val snapshotPackages = LinkedHashMap<String, SnapshotPackage>()
+
+    /**
+     * Indexes per ABI, built on first use. Replaced (never modified) under lock.
+     */
+    @Volatile
+    private var indexes: Map<String, AbiIndex> = emptyMap()
+
+    /**
+     * Packages waiting to be resolved again. Only accessed on the handler thread.
+     */
+    private val pendingPackages = LinkedHashSet<String>()
+    private var flushScheduled = false
+
+    private val packageChangeReceiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context, intent: Intent) {
+            val packageName = intent.data?.schemeSpecificPart ?: return
+            pendingPackages.add(packageName)
+            if (!flushScheduled) {
+                flushScheduled = true
+                handler.postDelayed({ flushPendingPackages() }, DEBOUNCE_MILLIS)
+            }
+        }
+    }
+
+    init {
+        // Register before the initial scan, so no change can fall in between.
+        val filter = IntentFilter().apply {
+            addAction(Intent.ACTION_PACKAGE_ADDED)
+            addAction(Intent.ACTION_PACKAGE_REMOVED)
+            addAction(Intent.ACTION_PACKAGE_REPLACED)
+            addAction(Intent.ACTION_PACKAGE_CHANGED)
+            addDataScheme("package")
+        }
+        appContext.registerReceiver(packageChangeReceiver, filter, null, handler)
+        val snapshot = RuntimeCatalogSnapshot.read(snapshotFile)
+        if (snapshot != null) {
+            synchronized(lock) {
+                snapshotPackages.putAll(snapshot)
+            }
+            handler.post { verifySnapshot(snapshot) }
+        } else {
+            val allResolutions = resolve(
+                Intent(OpenXRLoaderUtils.serviceName),
+                PackageManager.GET_META_DATA or PackageManager.GET_SHARED_LIBRARY_FILES
+            )
+            synchronized(lock) {
+                for (resolveInfo in allResolutions) {
+                    val packageName = resolveInfo.serviceInfo?.packageName ?: continue
+                    resolutions[packageName] = resolutions[packageName].orEmpty() + resolveInfo
+                }
+            }
+            handler.post { writeSnapshot() }
+        }
+    }
+
+    /**
+     * Get all installed OpenXR runtimes, even inactive ones.
+     *
+     * @param abi the ABI to return data for.
+     * @return the runtimes, possibly empty.
+     */
+    fun getRuntimes(abi: String): List<RuntimeData> = getIndex(abi).all
+
+    /**
+     * Get all installed OpenXR runtimes of a given major version, even inactive ones.
+     *
+     * @param majorVersion the OpenXR major version to find.
+     * @param abi the ABI to return data for.
+     * @return the runtimes, possibly empty.
+     */
+    fun getRuntimes(majorVersion: Int, abi: String): List<RuntimeData> =
+        getIndex(abi).byMajorVersion[majorVersion.toLong()].orEmpty()
+
+    /**
+     * Get an installed OpenXR runtime by package name.
+     *
+     * @param packageName the package name of the runtime.
+     * @param majorVersion the OpenXR major version to find.
+     * @param abi the ABI to return data for.
+     * @return the runtime, or null if that package does not provide one for that major version.
+     */
+    fun findRuntime(packageName: String, majorVersion: Int, abi: String): RuntimeData? =
+        getIndex(abi).byPackage[packageName]?.find { it.majorVersion == majorVersion.toLong() }
+
+    private fun getIndex(abi: String): AbiIndex {
+        indexes[abi]?.let { return it }
+        synchronized(lock) {
+            indexes[abi]?.let { return it }
+            val byPackage = LinkedHashMap<String, List<RuntimeData>>()
+            for ((packageName, infos) in resolutions) {
+                byPackage[packageName] = toRuntimeData(infos, abi)
+            }
+            // The library directory does not depend on the ABI yet (see RuntimeData), so the
+            // snapshot holds the same runtimes for every ABI.
+            for ((packageName, entry) in snapshotPackages) {
+                byPackage[packageName] = entry.runtimes
+            }
+            val index = AbiIndex(byPackage)
+            indexes = indexes + (abi to index)
+            return index
+        }
+    }
+
+    /**
+     * Resolve all packages changed since the last flush, and update the indexes.
+     *
+     * Runs on the handler thread.
+     */
+    private fun flushPendingPackages() {
+        flushScheduled = false
+        if (pendingPackages.isEmpty()) {
+            return
+        }
+        val updated = LinkedHashMap<String, List<ResolveInfo>>()
+        for (packageName in pendingPackages) {
+            updated[packageName] = resolve(
+                Intent(OpenXRLoaderUtils.serviceName).setPackage(packageName),
+                PackageManager.GET_META_DATA or PackageManager.GET_SHARED_LIBRARY_FILES
+            )
+        }
+        pendingPackages.clear()
+        BrokerLog.i(TAG) { "Updating runtime registry for ${updated.size} changed package(s)" }
+        // Only a package that provides a runtime, or used to, can change a chooser's answer.
+        var runtimesChanged = false
+        synchronized(lock) {
+            for ((packageName, infos) in updated) {
+                if (infos.isNotEmpty() || packageName in resolutions || packageName in snapshotPackages) {
+                    runtimesChanged = true
+                }
+                snapshotPackages.remove(packageName)
+                if (infos.isEmpty()) {
+                    resolutions.remove(packageName)
+                } else {
+                    resolutions[packageName] = infos
+                }
+            }
+            indexes = indexes.mapValues { (abi, index) ->
+                val byPackage = LinkedHashMap(index.byPackage)
+                for (packageName in updated.keys) {
+                    val infos = resolutions[packageName]
+                    if (infos == null) {
+                        byPackage.remove(packageName)
+                    } else {
+                        byPackage[packageName] = toRuntimeData(infos, abi)
+                    }
+                }
+                AbiIndex(byPackage)
+            }
+        }
+        if (runtimesChanged) {
+            RuntimeCacheGeneration.invalidate()
+            writeSnapshot()
+        }
+    }
+
+    /**
+     * Find the packages that changed since the snapshot was written, and resolve only those.
+     *
+     * Listing the runtime services without meta-data is enough to spot installed and removed
+     * packages; the rest are compared by version code and last update time.
+     *
+     * Runs on the handler thread.
+     */
+    private fun verifySnapshot(snapshot: Map<String, SnapshotPackage>) {
+        val installed = LinkedHashSet<String>()
+        for (resolveInfo in resolve(Intent(OpenXRLoaderUtils.serviceName), 0)) {
+            resolveInfo.serviceInfo?.packageName?.let { installed.add(it) }
+        }
+        for (packageName in installed) {
+            val entry = snapshot[packageName]
+            if (entry == null || !entry.matches(getPackageInfo(packageName))) {
+                pendingPackages.add(packageName)
+            }
+        }
+        for (packageName in snapshot.keys) {
+            if (packageName !in installed) {
+                pendingPackages.add(packageName)
+            }
+        }
+        BrokerLog.i(TAG) { "Runtime catalog snapshot has ${pendingPackages.size} stale package(s)" }
+        flushPendingPackages()
+    }
+
+    /**
+     * Persist the current catalog.
+     *
+     * Packages with a pending broadcast are left out, to be resolved again on the next start. A
+     * package updated after it was resolved has a broadcast on the way, whose flush writes the
+     * snapshot again.
+     *
+     * Runs on the handler thread.
+     */
+    private fun writeSnapshot() {
+        val resolved: Map<String, List<ResolveInfo>>
+        val fromSnapshot: Map<String, SnapshotPackage>
+        synchronized(lock) {
+            resolved = LinkedHashMap(resolutions)
+            fromSnapshot = LinkedHashMap(snapshotPackages)
+        }
+        val packages = LinkedHashMap<String, SnapshotPackage>()
+        for ((packageName, infos) in resolved) {
+            if (packageName in pendingPackages) {
+                continue
+            }
+            val packageInfo = getPackageInfo(packageName) ?: continue
+            packages[packageName] = SnapshotPackage(
+                packageInfo.longVersionCodeCompat,
+                packageInfo.lastUpdateTime,
+                toRuntimeData(infos, Build.SUPPORTED_ABIS[0])
+            )
+        }
+        for ((packageName, entry) in fromSnapshot) {
+            if (packageName !in pendingPackages) {
+                packages[packageName] = entry
+            }
+        }
+        RuntimeCatalogSnapshot.write(snapshotFile, packages)
+    }
+
+    private fun getPackageInfo(packageName: String): PackageInfo? {
+        return try {
+            appContext.packageManager.getPackageInfo(packageName, 0)
+        } catch (e: PackageManager.NameNotFoundException) {
+            null
+        }
+    }
+
+    /**
+     * Stop watching for package changes. The registry must not be used afterwards.
+     */
+    private fun close() {
+        appContext.unregisterReceiver(packageChangeReceiver)
+        handlerThread.quitSafely()
+    }
+
+    private val PackageInfo.longVersionCodeCompat: Long
+        get() = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            longVersionCode
+        } else {
+            @Suppress("DEPRECATION")
+            versionCode.toLong()
+        }
+
+    private fun SnapshotPackage.matches(packageInfo: PackageInfo?): Boolean {
+        return packageInfo != null &&
+                packageInfo.longVersionCodeCompat == versionCode &&
+                packageInfo.lastUpdateTime == lastUpdateTime
+    }
+
+    private fun resolve(intent: Intent, flags: Int): List<ResolveInfo> {
+        return BrokerTrace.section(BrokerTrace.PACKAGE_SCAN) {
+            appContext.packageManager.queryIntentServices(intent, flags)
+        }
+    }
+
+    private fun toRuntimeData(resolutions: List<ResolveInfo>, abi: String): List<RuntimeData> {
+        val runtimes = ArrayList<RuntimeData>(resolutions.size)
+        for (resolveInfo in resolutions) {
+            BrokerLog.d(TAG) {
+                "Considering intent service resolution: " +
+                        resolveInfo.serviceInfo.applicationInfo.packageName
+            }
+            val runtimeData = RuntimeData.fromIntentResolveInfo(resolveInfo, abi)
+            runtimeData ?: continue
+            BrokerLog.d(TAG) {
+                String.format(
+                    "Runtime SO for %s is '%s', OpenXR major version %d",
+                    resolveInfo.serviceInfo.applicationInfo.packageName,
+                    runtimeData.soFilename, runtimeData.majorVersion
+                )
+            }
+            runtimes.add(runtimeData)
+        }
+        return runtimes
+    }
+
+    companion object {
+        private const val TAG = "RuntimeRegistry"
+
+        /**
+         * How long to wait for more package broadcasts before resolving changed packages.
+         */
+        private const val DEBOUNCE_MILLIS = 500L
+
+        /**
+         * The name of the catalog snapshot file, in the no-backup files directory.
+         */
+        private const val SNAPSHOT_FILE_NAME = "openxr_runtime_catalog.bin"
+
+        @Volatile
+        private var instance: RuntimeRegistry? = null
+
+        /**
+         * Get the registry for this process, creating it (and loading the catalog snapshot, or
+         * scanning for runtimes) if needed.
+         *
+         * @param context any Context: only its application context is kept.
+         */
+        @JvmStatic
+        fun getInstance(context: Context): RuntimeRegistry {
+            instance?.let { return it }
+            synchronized(this) {
+                return instance ?: RuntimeRegistry(context).also { instance = it }
+            }
+        }
+
+        /**
+         * Drop the registry for this process, so the next [getInstance] scans for runtimes again,
+         * with a new context.
+         */
+        @VisibleForTesting
+        @JvmStatic
+        fun resetForTesting() {
+            synchronized(this) {
+                instance?.close()
+                instance = null
+            }
+        }
+    }
+}
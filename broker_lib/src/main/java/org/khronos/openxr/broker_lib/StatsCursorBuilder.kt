@@ -0,0 +1,41 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.broker_lib
+
+import android.database.MatrixCursor
+import org.khronos.openxr.runtime_broker.utils.BrokerContract.Stats.Columns
+
+internal class StatsCursorBuilder(projection: Array<String>) {
+    companion object {
+        // Indices into the column list passed to planCache.
+        private const val COLUMN_ID = 0
+        private const val COLUMN_NAME = 1
+        private const val COLUMN_VALUE = 2
+
+        private val planCache = ProjectionPlanCache(
+            arrayOf(
+                Columns._ID,
+                Columns.NAME,
+                Columns.VALUE
+            )
+        )
+    }
+
+    private val plan: IntArray = planCache.getPlan(projection)
+    val cursor: MatrixCursor = MatrixCursor(projection)
+
+    fun addAllRows(stats: BrokerStats) {
+        var itemNum = 0
+        stats.forEachValue { name, value ->
+            val row = cursor.newRow()
+            for (column in plan) {
+                when (column) {
+                    COLUMN_ID -> row.add(itemNum)
+                    COLUMN_NAME -> row.add(name)
+                    COLUMN_VALUE -> row.add(value)
+                }
+            }
+            ++itemNum
+        }
+    }
+}
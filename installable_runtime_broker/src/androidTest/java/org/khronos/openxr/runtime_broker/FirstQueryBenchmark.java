@@ -0,0 +1,68 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker;
+
+import android.content.Context;
+import android.os.Build;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.khronos.openxr.broker_lib.RuntimeRegistry;
+import org.khronos.openxr.runtime_broker.data.RuntimeRepositoryHolder;
+
+/**
+ * Time for the chooser to answer the first query in a broker process, compared to later queries.
+ * <p>
+ * This is an in-process approximation of a cold start: each iteration drops the repository and
+ * the runtime registry, so it measures creating the repository, loading the selection and
+ * finding the runtimes, as a query arriving in a new broker process would. Process start itself
+ * (class loading, Application.onCreate()) and the Hilt graph are not part of the measurement:
+ * the broker does not go through Hilt to answer queries.
+ */
+public class FirstQueryBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+    private final String abi = Build.SUPPORTED_ABIS[0];
+    private final InstallableRuntimeChooser chooser = new InstallableRuntimeChooser();
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() {
+        RuntimeRepositoryHolder.setForTesting(null);
+        RuntimeRegistry.resetForTesting();
+    }
+
+    @Test
+    public void firstQuery() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            RuntimeRepositoryHolder.setForTesting(null);
+            RuntimeRegistry.resetForTesting();
+            state.resumeTiming();
+            chooser.getActiveRuntime(context, 1, abi);
+        }
+    }
+
+    @Test
+    public void laterQuery() {
+        chooser.getActiveRuntime(context, 1, abi);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            chooser.getActiveRuntime(context, 1, abi);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.security.crypto.EncryptedSharedPreferences;
+import androidx.security.crypto.MasterKey;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Per-query cost of reading the selected runtime, as done by every installable broker query.
+ */
+public class SelectionStoreBenchmark {
+
+    private static final String fileName = "selection_store_benchmark.preferences";
+    private static final String packageName = "org.khronos.example";
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        new EncryptedSelectionStore(context, fileName, Runnable::run).setSelectedRuntime(packageName);
+    }
+
+    /**
+     * The previous behavior: build the master key and preferences on every read.
+     */
+    @Test
+    public void readReopeningPreferences() throws Exception {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            MasterKey masterKey = new MasterKey.Builder(context)
+                    .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
+                    .setUserAuthenticationRequired(false)
+                    .build();
+            SharedPreferences preferences = EncryptedSharedPreferences.create(
+                    context,
+                    fileName,
+                    masterKey,
+                    EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
+                    EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM);
+            preferences.getString(EncryptedSelectionStore.PREFERENCE_KEY_SELECTED, "");
+        }
+    }
+
+    @Test
+    public void readFromSelectionStore() {
+        SelectionStore store = new EncryptedSelectionStore(context, fileName, Runnable::run);
+        // The one-time load is not part of the per-query cost.
+        assertThat(store.getSelectedRuntime()).isEqualTo(packageName);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            store.getSelectedRuntime();
+        }
+    }
+}
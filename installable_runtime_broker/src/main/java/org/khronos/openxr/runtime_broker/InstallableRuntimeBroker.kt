@@ -3,11 +3,40 @@
 package org.khronos.openxr.runtime_broker
 
 import org.khronos.openxr.broker_lib.AbstractRuntimeBroker
+import org.khronos.openxr.broker_lib.BrokerRuntimeChooser
 import org.khronos.openxr.broker_lib.BrokerUriParser
+import org.khronos.openxr.broker_lib.NewestRuntimeChooser
 import org.khronos.openxr.broker_lib.RuntimeBrokerUriParser
+import org.khronos.openxr.broker_lib.RuntimeChooserChain
+import org.khronos.openxr.runtime_broker.utils.BrokerContract
 import org.khronos.openxr.runtime_broker.utils.RuntimeChooser
 
 class InstallableRuntimeBroker : AbstractRuntimeBroker() {
-    override val runtimeChooser: RuntimeChooser = InstallableRuntimeChooser()
+    /**
+     * The user's selection, then the system broker's runtime, then the newest installed runtime,
+     * so a loader gets a definitive answer from this broker alone. A link that throws is skipped,
+     * but still counted in the chooser_exceptions stat.
+     */
+    override val runtimeChooser: RuntimeChooser = RuntimeChooserChain(
+        links = listOf(
+            RuntimeChooserChain.Link(InstallableRuntimeChooser()),
+            RuntimeChooserChain.Link(
+                BrokerRuntimeChooser(BrokerContract.BrokerType.SystemRuntimeBroker),
+                SYSTEM_BROKER_NOT_FOUND_TTL_MILLIS
+            ),
+            RuntimeChooserChain.Link(NewestRuntimeChooser())
+        ),
+        failureListener = { _, _ -> recordChooserException() }
+    )
     override val parser: BrokerUriParser = RuntimeBrokerUriParser()
-}
\ No newline at end of file
+
+    // The first lookup loads the selection store and scans for runtimes: start it before clients ask.
+    override val warmUpOnCreate: Boolean = true
+
+    companion object {
+        /**
+         * How long to trust that the system broker (often not installed at all) has no runtime.
+         */
+        private const val SYSTEM_BROKER_NOT_FOUND_TTL_MILLIS = 60_000L
+    }
+}
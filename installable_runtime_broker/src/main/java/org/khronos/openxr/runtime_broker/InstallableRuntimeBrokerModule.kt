@@ -9,16 +9,20 @@ import dagger.hilt.InstallIn
 import dagger.hilt.android.qualifiers.ApplicationContext
 import dagger.hilt.components.SingletonComponent
 import org.khronos.openxr.runtime_broker.data.RuntimeRepository
-import org.khronos.openxr.runtime_broker.data.RuntimeRepositoryImpl
+import org.khronos.openxr.runtime_broker.data.RuntimeRepositoryHolder
 import javax.inject.Singleton
 
 @Module
 @InstallIn(SingletonComponent::class)
 object InstallableRuntimeBrokerModule {
 
+    /**
+     * The same instance the runtime broker uses, so selection changes made in the UI are seen
+     * by queries immediately.
+     */
     @Provides
     @Singleton
     fun provideRuntimeRepository(@ApplicationContext context: Context): RuntimeRepository {
-        return RuntimeRepositoryImpl(context)
+        return RuntimeRepositoryHolder.get(context)
     }
 }
@@ -3,22 +3,12 @@
 package org.khronos.openxr.runtime_broker
 
 import android.content.Context
-import dagger.hilt.EntryPoint
-import dagger.hilt.InstallIn
-import dagger.hilt.android.EntryPointAccessors
-import dagger.hilt.components.SingletonComponent
-import org.khronos.openxr.broker_lib.OpenXRLoaderUtils
-import org.khronos.openxr.runtime_broker.data.RuntimeRepository
+import org.khronos.openxr.broker_lib.RuntimeRegistry
+import org.khronos.openxr.runtime_broker.data.RuntimeRepositoryHolder
 import org.khronos.openxr.runtime_broker.utils.RuntimeChooser
 import org.khronos.openxr.runtime_broker.utils.RuntimeData
 
 class InstallableRuntimeChooser : RuntimeChooser {
-    @EntryPoint
-    @InstallIn(SingletonComponent::class)
-    interface RepositoryEntryPoint {
-        fun runtimeRepository(): RuntimeRepository
-    }
-
     /**
      * Get the currently active runtime for a given specification major version.
      *
@@ -27,14 +17,37 @@ class InstallableRuntimeChooser : RuntimeChooser {
      * @return the active runtime, or null if something went wrong or none were found.
      */
     override fun getActiveRuntime(context: Context, majorVersion: Int, abi: String): RuntimeData? {
-        val entryPoint = EntryPointAccessors.fromApplication(
-            context.applicationContext,
-            RepositoryEntryPoint::class.java
-        )
+        val selected = getSelectedRuntime(context)
+        if (selected.isEmpty()) {
+            return null
+        }
+        return RuntimeRegistry.getInstance(context).findRuntime(selected, majorVersion, abi)
+    }
 
-        val selected = entryPoint.runtimeRepository().getSelectedRuntime()
-        return OpenXRLoaderUtils.findOpenXRRuntimes(context, majorVersion, abi)?.find {
-            it.packageName == selected
+    /**
+     * Get the currently active runtimes for several major versions and ABIs, reading the
+     * selection once and looking each combination up in the same registry.
+     */
+    override fun getActiveRuntimes(
+        context: Context,
+        majorVersions: IntArray,
+        abis: Array<String>
+    ): Array<RuntimeData?> {
+        val runtimes = arrayOfNulls<RuntimeData>(majorVersions.size * abis.size)
+        val selected = getSelectedRuntime(context)
+        if (selected.isEmpty()) {
+            return runtimes
+        }
+        val registry = RuntimeRegistry.getInstance(context)
+        for (v in majorVersions.indices) {
+            for (a in abis.indices) {
+                runtimes[v * abis.size + a] = registry.findRuntime(selected, majorVersions[v], abis[a])
+            }
         }
+        return runtimes
+    }
+
+    private fun getSelectedRuntime(context: Context): String {
+        return RuntimeRepositoryHolder.get(context).getSelectedRuntime()
     }
 }
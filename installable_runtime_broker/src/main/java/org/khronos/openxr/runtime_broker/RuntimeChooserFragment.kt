@@ -45,16 +45,9 @@ class RuntimeChooserFragment : Fragment() {
         super.onViewCreated(view, savedInstanceState)
 
         adapter = InstalledRuntimeAdapter()
-        adapter.setOnItemClickListener { runtimeInformation, position ->
-            val checked = !runtimeInformation.selected
-            val checkedPosition = if (checked) position else -1
-
-            for ((index, item) in adapter.currentList.withIndex()) {
-                item.selected = (index == checkedPosition)
-            }
-            adapter.notifyDataSetChanged()
-
-            runtimeViewModel.updateSelection(adapter.currentList[position])
+        adapter.setOnItemClickListener { runtimeInformation, _ ->
+            // The list is updated from the repository, which rebinds only the changed rows.
+            runtimeViewModel.updateSelection(runtimeInformation, !runtimeInformation.selected)
         }
 
         val layoutManager = LinearLayoutManager(requireContext())
@@ -70,7 +63,6 @@ class RuntimeChooserFragment : Fragment() {
         runtimeViewModel.runtimes.observe(viewLifecycleOwner, { runtimes ->
             adapter.submitList(runtimes)
         })
-        runtimeViewModel.load()
     }
 
     override fun onDestroyView() {
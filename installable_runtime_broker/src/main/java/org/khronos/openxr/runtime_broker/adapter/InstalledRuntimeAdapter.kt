@@ -27,9 +27,22 @@ class InstalledRuntimeAdapter :
             newItem: RuntimeInformation
         ): Boolean {
             return oldItem.applicationName == newItem.applicationName
+                    && oldItem.icon === newItem.icon
                     && oldItem.majorVersion == newItem.majorVersion
+                    && oldItem.lastUpdateTime == newItem.lastUpdateTime
                     && oldItem.selected == newItem.selected
         }
+
+        override fun getChangePayload(
+            oldItem: RuntimeInformation,
+            newItem: RuntimeInformation
+        ): Any? {
+            return if (oldItem.copy(selected = newItem.selected) == newItem) {
+                SELECTION_CHANGED
+            } else {
+                null
+            }
+        }
     }
 
     class TwoLineViewHolder(
@@ -37,21 +50,33 @@ class InstalledRuntimeAdapter :
         private var itemClickListener: OnItemClickListener<RuntimeInformation>? = null
     ) :
         RecyclerView.ViewHolder(binding.root) {
+        private var item: RuntimeInformation? = null
+
         init {
             binding.root.setOnClickListener {
                 itemClickListener?.invoke(
-                    binding.runtime!!,
+                    item!!,
                     adapterPosition
                 )
             }
         }
 
         fun bind(item: RuntimeInformation) {
+            this.item = item
             binding.apply {
                 runtime = item
                 executePendingBindings()
             }
         }
+
+        /**
+         * Update only the check box, for an item that differs from the bound one only in its
+         * selected flag.
+         */
+        fun bindSelection(item: RuntimeInformation) {
+            this.item = item
+            binding.listItemCheckbox.isChecked = item.selected
+        }
     }
 
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): TwoLineViewHolder {
@@ -69,4 +94,23 @@ class InstalledRuntimeAdapter :
         holder.bind(item)
     }
 
+    override fun onBindViewHolder(
+        holder: TwoLineViewHolder,
+        position: Int,
+        payloads: MutableList<Any>
+    ) {
+        if (payloads.isNotEmpty() && payloads.all { it === SELECTION_CHANGED }) {
+            holder.bindSelection(getItem(position))
+        } else {
+            super.onBindViewHolder(holder, position, payloads)
+        }
+    }
+
+    companion object {
+        /**
+         * Change payload for an item whose selected flag is the only change.
+         */
+        private val SELECTION_CHANGED = Any()
+    }
+
 }
\ No newline at end of file
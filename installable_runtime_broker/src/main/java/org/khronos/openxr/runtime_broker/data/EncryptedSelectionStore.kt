@@ -0,0 +1,75 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker.data
+
+import android.content.Context
+import android.content.SharedPreferences
+import androidx.security.crypto.EncryptedSharedPreferences
+import androidx.security.crypto.MasterKey
+import org.khronos.openxr.runtime_broker.BuildConfig
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+/**
+ * SelectionStore backed by EncryptedSharedPreferences.
+ *
+ * The preferences (and their Keystore-backed master key) are opened once, on the first read or
+ * write. After that, reads come from an in-memory snapshot, and writes update the snapshot
+ * immediately and are persisted in order on a background thread.
+ */
+class EncryptedSelectionStore(
+    private val context: Context,
+    private val fileName: String = "${BuildConfig.APPLICATION_ID}.preferences",
+    private val writeExecutor: Executor = Executors.newSingleThreadExecutor()
+) : SelectionStore {
+    private val lock = Any()
+
+    @Volatile
+    private var selected: String? = null
+
+    private val preferences: SharedPreferences by lazy { openPreferences() }
+
+    override fun getSelectedRuntime(): String {
+        selected?.let { return it }
+        synchronized(lock) {
+            selected?.let { return it }
+            val loaded = preferences.getString(PREFERENCE_KEY_SELECTED, "")!!
+            selected = loaded
+            return loaded
+        }
+    }
+
+    override fun setSelectedRuntime(packageName: String?) {
+        synchronized(lock) {
+            selected = packageName ?: ""
+        }
+        writeExecutor.execute {
+            val editor = preferences.edit()
+            if (packageName != null) {
+                editor.putString(PREFERENCE_KEY_SELECTED, packageName)
+            } else {
+                editor.remove(PREFERENCE_KEY_SELECTED)
+            }
+            editor.commit()
+        }
+    }
+
+    private fun openPreferences(): SharedPreferences {
+        val masterKey = MasterKey.Builder(context)
+            .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
+            .setUserAuthenticationRequired(false)
+            .build()
+
+        return EncryptedSharedPreferences.create(
+            context,
+            fileName,
+            masterKey,
+            EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
+            EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
+        )
+    }
+
+    companion object {
+        internal const val PREFERENCE_KEY_SELECTED = "selected_runtime"
+    }
+}
@@ -13,7 +13,7 @@ data class RuntimeInformation(
     val majorVersion: Long,
     val firstInstallTime: Long,
     val lastUpdateTime: Long,
-    var selected: Boolean
+    val selected: Boolean
 )
 
 fun RuntimeInformation.lastUpdatedDate(): String = DateFormat.getDateInstance().format(Date(lastUpdateTime));
@@ -2,16 +2,20 @@
 // SPDX-License-Identifier: BSL-1.0
 package org.khronos.openxr.runtime_broker.data
 
+import kotlinx.coroutines.flow.Flow
+
 /**
  * Interface definition for query/update runtime information.
  */
 interface RuntimeRepository {
     /**
-     * Get installed runtimes.
+     * Installed runtimes, sorted by major version then last update time.
      *
-     * @return List of runtime information.
+     * Loaded on a background dispatcher while collected, and loaded again when the installed
+     * runtimes change. A selection change emits the same runtimes with new selected flags,
+     * without loading anything.
      */
-    fun getInstalledRuntimes(): List<RuntimeInformation>
+    val installedRuntimes: Flow<List<RuntimeInformation>>
 
     /**
      * Query if given package name is the one selected by user.
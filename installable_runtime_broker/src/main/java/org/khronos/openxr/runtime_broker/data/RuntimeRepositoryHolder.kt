@@ -0,0 +1,45 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker.data
+
+import android.content.Context
+import androidx.annotation.VisibleForTesting
+
+/**
+ * Process-wide RuntimeRepository, shared by the Hilt graph and the runtime broker.
+ *
+ * Broker queries get the repository from here instead of through a Hilt entry point, so a query
+ * arriving in a cold process only constructs the repository and its selection store, not the
+ * app's dependency graph.
+ */
+object RuntimeRepositoryHolder {
+    @Volatile
+    private var repository: RuntimeRepository? = null
+
+    /**
+     * Get the repository, creating it if needed.
+     *
+     * @param context any Context: only its application context is kept.
+     */
+    @JvmStatic
+    fun get(context: Context): RuntimeRepository {
+        repository?.let { return it }
+        synchronized(this) {
+            repository?.let { return it }
+            val appContext = context.applicationContext
+            return RuntimeRepositoryImpl(appContext, EncryptedSelectionStore(appContext))
+                .also { repository = it }
+        }
+    }
+
+    /**
+     * Replace the repository, or with null, make the next [get] create a new one.
+     */
+    @VisibleForTesting
+    @JvmStatic
+    fun setForTesting(repository: RuntimeRepository?) {
+        synchronized(this) {
+            this.repository = repository
+        }
+    }
+}
@@ -3,80 +3,149 @@
 package org.khronos.openxr.runtime_broker.data
 
 import android.content.Context
-import android.content.SharedPreferences
-import androidx.security.crypto.EncryptedSharedPreferences
-import androidx.security.crypto.MasterKey
+import android.content.pm.PackageManager
+import android.graphics.drawable.Drawable
+import android.util.Log
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
 import org.khronos.openxr.broker_lib.OpenXRLoaderUtils
-import org.khronos.openxr.runtime_broker.BuildConfig
+import org.khronos.openxr.broker_lib.RuntimeCacheGeneration
+import org.khronos.openxr.runtime_broker.utils.BrokerTrace
 import org.khronos.openxr.runtime_broker.utils.RuntimeData
 import javax.inject.Inject
 
-class RuntimeRepositoryImpl @Inject constructor(private val context: Context) : RuntimeRepository {
-    override fun getInstalledRuntimes(): List<RuntimeInformation> {
-        val runtimes = OpenXRLoaderUtils.findOpenXRRuntimes(context)
-        return if (runtimes != null && runtimes.isNotEmpty()) {
-            val runtimeInfoList = mutableListOf<RuntimeInformation>()
+class RuntimeRepositoryImpl @Inject constructor(
+    private val context: Context,
+    private val selectionStore: SelectionStore
+) : RuntimeRepository {
+    /**
+     * The parts of RuntimeInformation that need PackageManager calls.
+     */
+    private class PackageDetails(
+        val applicationName: String,
+        val icon: Drawable,
+        val firstInstallTime: Long,
+        val lastUpdateTime: Long
+    )
+
+    /**
+     * Details per runtime, keyed by identity: RuntimeRegistry only creates new RuntimeData for
+     * packages that it resolves again, so an entry stays valid as long as its runtime is still
+     * listed. Guarded by itself.
+     */
+    private val detailsCache = HashMap<RuntimeData, PackageDetails>()
+
+    /**
+     * The selected package, read from the store on first use.
+     */
+    private val selectedRuntime by lazy { MutableStateFlow(readSelection()) }
+
+    override val installedRuntimes: Flow<List<RuntimeInformation>> =
+        runtimeChanges()
+            .map { loadRuntimes() }
+            .combine(flow { emitAll(selectedRuntime) }) { runtimes, selected ->
+                runtimes.map { it.copy(selected = it.packageName == selected) }
+            }
+            .distinctUntilChanged()
+            .flowOn(Dispatchers.IO)
+
+    /**
+     * Emits once when collected, then after every [RuntimeCacheGeneration] invalidation for
+     * changed packages. Selection changes reach the list through [selectedRuntime] instead.
+     */
+    private fun runtimeChanges(): Flow<Unit> = callbackFlow {
+        val listener = RuntimeCacheGeneration.InvalidationListener { reason ->
+            if (reason == RuntimeCacheGeneration.Reason.Packages) {
+                trySend(Unit)
+            }
+        }
+        RuntimeCacheGeneration.addInvalidationListener(listener)
+        send(Unit)
+        awaitClose { RuntimeCacheGeneration.removeInvalidationListener(listener) }
+    }.conflate()
+
+    private fun loadRuntimes(): List<RuntimeInformation> {
+        val runtimes = OpenXRLoaderUtils.findOpenXRRuntimes(context) ?: return listOf()
+        val runtimeInfoList = mutableListOf<RuntimeInformation>()
+        synchronized(detailsCache) {
+            detailsCache.keys.retainAll(runtimes)
             for (runtime in runtimes) {
-                runtimeInfoList.add(runtime.toRuntimeInformation(context))
+                val details = detailsCache[runtime]
+                    ?: loadDetails(runtime.packageName)?.also { detailsCache[runtime] = it }
+                    ?: continue
+                runtimeInfoList.add(runtime.toRuntimeInformation(details))
             }
+        }
 
-            // Sorted by version then last update time
-            runtimeInfoList.sortWith(compareByDescending<RuntimeInformation> { it.majorVersion }.thenByDescending { it.lastUpdateTime })
-            runtimeInfoList
-        } else listOf()
+        // Sorted by version then last update time
+        runtimeInfoList.sortWith(compareByDescending<RuntimeInformation> { it.majorVersion }.thenByDescending { it.lastUpdateTime })
+        return runtimeInfoList
     }
 
-    private fun RuntimeData.toRuntimeInformation(context: Context): RuntimeInformation {
-        val applicationName = context.packageManager.getApplicationInfo(packageName, 0)
-            .let { info -> context.packageManager.getApplicationLabel(info) }
-        val icon = context.packageManager.getApplicationIcon(packageName)
-        val packageInfo = context.packageManager.getPackageInfo(packageName, 0)
+    private fun loadDetails(packageName: String): PackageDetails? {
+        val packageManager = context.packageManager
+        BrokerTrace.beginSection(BrokerTrace.LOAD_RUNTIME_DETAILS)
+        return try {
+            val packageInfo = packageManager.getPackageInfo(packageName, 0)
+            val applicationName = packageManager.getApplicationLabel(packageInfo.applicationInfo)
+            PackageDetails(
+                applicationName.toString(),
+                packageManager.getApplicationIcon(packageInfo.applicationInfo),
+                packageInfo.firstInstallTime,
+                packageInfo.lastUpdateTime
+            )
+        } catch (e: PackageManager.NameNotFoundException) {
+            // Removed since it was listed: the next invalidation drops it.
+            Log.w(TAG, "Runtime package $packageName is no longer installed")
+            null
+        } finally {
+            BrokerTrace.endSection()
+        }
+    }
 
+    private fun RuntimeData.toRuntimeInformation(details: PackageDetails): RuntimeInformation {
         return RuntimeInformation(
-            applicationName as String,
+            details.applicationName,
             packageName,
-            icon,
+            details.icon,
             majorVersion,
-            packageInfo.firstInstallTime,
-            packageInfo.lastUpdateTime,
-            isSelected(packageName)
+            details.firstInstallTime,
+            details.lastUpdateTime,
+            false
         )
     }
 
+    private fun readSelection(): String {
+        return BrokerTrace.section(BrokerTrace.READ_SELECTION) { selectionStore.getSelectedRuntime() }
+    }
+
     override fun isSelected(packageName: String): Boolean {
-        return getPreference(context).getString(PREFERENCE_KEY_SELECTED, "") == packageName
+        return readSelection() == packageName
     }
 
     override fun getSelectedRuntime(): String {
-        return getPreference(context).getString(PREFERENCE_KEY_SELECTED, "")!!
+        return readSelection()
     }
 
     override fun updateRuntimeSelection(packageName: String, selected: Boolean) {
-        val editor = getPreference(context).edit()
-        if (selected) {
-            editor.putString(PREFERENCE_KEY_SELECTED, packageName)
-        } else {
-            editor.remove(PREFERENCE_KEY_SELECTED)
-        }
-        editor.apply()
-    }
-
-    private fun getPreference(context: Context): SharedPreferences {
-        val masterKey = MasterKey.Builder(context)
-            .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
-            .setUserAuthenticationRequired(false)
-            .build()
-
-        return EncryptedSharedPreferences.create(
-            context,
-            "${BuildConfig.APPLICATION_ID}.preferences",
-            masterKey,
-            EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
-            EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
-        )
+        selectionStore.setSelectedRuntime(if (selected) packageName else null)
+        selectedRuntime.value = readSelection()
+        // Brokers drop their cached answers and notify their clients; the runtime list only
+        // updates its selected flags.
+        RuntimeCacheGeneration.invalidate(RuntimeCacheGeneration.Reason.Selection)
     }
 
     companion object {
-        private const val PREFERENCE_KEY_SELECTED = "selected_runtime"
+        private const val TAG = "RuntimeRepositoryImpl"
     }
 }
@@ -0,0 +1,22 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker.data
+
+/**
+ * Storage for the user-selected runtime.
+ */
+interface SelectionStore {
+    /**
+     * Get the user-selected runtime.
+     *
+     * @return Package name of user-selected runtime, or an empty string if there is none.
+     */
+    fun getSelectedRuntime(): String
+
+    /**
+     * Replace the user-selected runtime.
+     *
+     * @param packageName Package name of the selected runtime, or null to clear the selection.
+     */
+    fun setSelectedRuntime(packageName: String?)
+}
@@ -2,9 +2,13 @@
 // SPDX-License-Identifier: BSL-1.0
 package org.khronos.openxr.runtime_broker.viewmodel
 
-import androidx.lifecycle.MutableLiveData
+import androidx.lifecycle.LiveData
 import androidx.lifecycle.ViewModel
+import androidx.lifecycle.asLiveData
+import androidx.lifecycle.viewModelScope
 import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 import org.khronos.openxr.runtime_broker.data.RuntimeInformation
 import org.khronos.openxr.runtime_broker.data.RuntimeRepository
 import javax.inject.Inject
@@ -12,17 +16,17 @@ import javax.inject.Inject
 @HiltViewModel
 class InstalledRuntimeViewModel @Inject constructor(private val runtimeRepository: RuntimeRepository) :
     ViewModel() {
-    val runtimes: MutableLiveData<List<RuntimeInformation>> = MutableLiveData()
+    val runtimes: LiveData<List<RuntimeInformation>> =
+        runtimeRepository.installedRuntimes.asLiveData()
 
-    fun load() {
-        runtimes.value = runtimeRepository.getInstalledRuntimes()
-    }
-
-    fun updateSelection(runtimeInformation: RuntimeInformation) {
-        runtimeRepository.updateRuntimeSelection(
-            runtimeInformation.packageName,
-            runtimeInformation.selected
-        )
-        load()
+    fun updateSelection(runtimeInformation: RuntimeInformation, selected: Boolean) {
+        // The first use of the selection store opens the encrypted preferences, so keep it off
+        // the main thread too.
+        viewModelScope.launch(Dispatchers.IO) {
+            runtimeRepository.updateRuntimeSelection(
+                runtimeInformation.packageName,
+                selected
+            )
+        }
     }
 }
@@ -0,0 +1,347 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker;
+
+import android.app.Application;
+import android.content.ContentProvider;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.ResolveInfo;
+import android.content.pm.ServiceInfo;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.khronos.openxr.broker_lib.AbstractRuntimeBroker;
+import org.khronos.openxr.broker_lib.BrokerUriParser;
+import org.khronos.openxr.broker_lib.OpenXRLoaderUtils;
+import org.khronos.openxr.broker_lib.RuntimeBrokerUriParser;
+import org.khronos.openxr.broker_lib.RuntimeRegistry;
+import org.khronos.openxr.runtime_broker.data.RuntimeInformation;
+import org.khronos.openxr.runtime_broker.data.RuntimeRepository;
+import org.khronos.openxr.runtime_broker.data.RuntimeRepositoryHolder;
+import org.khronos.openxr.runtime_broker.utils.BrokerContract;
+import org.khronos.openxr.runtime_broker.utils.RuntimeChooser;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowPackageManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kotlinx.coroutines.flow.Flow;
+import kotlinx.coroutines.flow.FlowKt;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * A boot storm: many clients querying the broker at once, with nothing resolved yet.
+ * <p>
+ * Registers fake runtime services with the Robolectric package manager, then queries the broker
+ * from many threads, mixing active runtime and functions queries. Logs the throughput and latency
+ * percentiles, and fails if they are worse than the thresholds.
+ * <p>
+ * The default load is small, so that ordinary unit test runs stay fast. Heavier loads and the
+ * thresholds can be set with system properties, passed through by Gradle, for example
+ * {@code ./gradlew :installable_runtime_broker:testDebugUnitTest -Drobolectric.logging=stdout
+ * -Dopenxr.loadtest.threads=256 -Dopenxr.loadtest.queriesPerThread=500
+ * -Dopenxr.loadtest.maxP99Micros=5000}:
+ * <ul>
+ * <li>openxr.loadtest.runtimes: installed runtime packages</li>
+ * <li>openxr.loadtest.threads: concurrent clients</li>
+ * <li>openxr.loadtest.queriesPerThread: queries made by each client</li>
+ * <li>openxr.loadtest.functionsPercent: share of functions queries, the rest being active runtime
+ * queries</li>
+ * <li>openxr.loadtest.minQueriesPerSecond, openxr.loadtest.maxP50Micros,
+ * openxr.loadtest.maxP99Micros, openxr.loadtest.maxP999Micros: the thresholds</li>
+ * </ul>
+ * The default thresholds are loose enough for a shared CI machine: tighten them locally to check
+ * a change.
+ */
+@RunWith(RobolectricTestRunner.class)
+// A plain Application, so the test does not need the app's Hilt component.
+@Config(sdk = 30, application = Application.class)
+public class BrokerLoadTest {
+    private static final String TAG = "BrokerLoadTest";
+    private static final String PROPERTY_PREFIX = "openxr.loadtest.";
+
+    private static final int runtimes = intProperty("runtimes", 10);
+    private static final int threads = intProperty("threads", 16);
+    private static final int queriesPerThread = intProperty("queriesPerThread", 100);
+    private static final int functionsPercent = intProperty("functionsPercent", 25);
+
+    private static final long minQueriesPerSecond = intProperty("minQueriesPerSecond", 2000);
+    private static final long maxP50Micros = intProperty("maxP50Micros", 2_000);
+    private static final long maxP99Micros = intProperty("maxP99Micros", 20_000);
+    private static final long maxP999Micros = intProperty("maxP999Micros", 100_000);
+
+    private static final String abi = "arm64-v8a";
+    private static final String packagePrefix = "org.khronos.openxr.loadtest.runtime";
+    private static final String[] functionNames = new String[]{
+            "xrCreateInstance",
+            "xrDestroyInstance",
+            "xrGetInstanceProcAddr",
+            "xrEnumerateApiLayerProperties",
+            "xrEnumerateInstanceExtensionProperties",
+            "xrNegotiateLoaderRuntimeInterface",
+    };
+    private static final String[] activeRuntimeProjection = new String[]{
+            BrokerContract.ActiveRuntime.Columns.PACKAGE_NAME,
+            BrokerContract.ActiveRuntime.Columns.NATIVE_LIB_DIR,
+            BrokerContract.ActiveRuntime.Columns.SO_FILENAME,
+            BrokerContract.ActiveRuntime.Columns.HAS_FUNCTIONS,
+    };
+    private static final String[] functionsProjection = new String[]{
+            BrokerContract.Functions.Columns.FUNCTION_NAME,
+            BrokerContract.Functions.Columns.SYMBOL_NAME,
+    };
+
+    private final String selectedPackage = packagePrefix + (runtimes - 1);
+
+    /**
+     * A repository with a fixed selection, instead of one backed by the Android keystore.
+     */
+    private static final class FixedSelectionRepository implements RuntimeRepository {
+        private final String selectedPackage;
+
+        FixedSelectionRepository(String selectedPackage) {
+            this.selectedPackage = selectedPackage;
+        }
+
+        @NonNull
+        @Override
+        public Flow<List<RuntimeInformation>> getInstalledRuntimes() {
+            return FlowKt.emptyFlow();
+        }
+
+        @Override
+        public boolean isSelected(@NonNull String packageName) {
+            return selectedPackage.equals(packageName);
+        }
+
+        @NonNull
+        @Override
+        public String getSelectedRuntime() {
+            return selectedPackage;
+        }
+
+        @Override
+        public void updateRuntimeSelection(@NonNull String packageName, boolean selected) {
+            // The selection stays fixed for the whole load.
+        }
+    }
+
+    /**
+     * A broker with the user's selection as its only chooser and no result cache, so every query
+     * goes to the selection and the runtime registry.
+     */
+    public static final class UncachedBroker extends AbstractRuntimeBroker {
+        private final RuntimeChooser runtimeChooser = new InstallableRuntimeChooser();
+        private final BrokerUriParser parser = new RuntimeBrokerUriParser();
+
+        @NonNull
+        @Override
+        protected RuntimeChooser getRuntimeChooser() {
+            return runtimeChooser;
+        }
+
+        @NonNull
+        @Override
+        protected BrokerUriParser getParser() {
+            return parser;
+        }
+
+        @Override
+        protected boolean getCacheResults() {
+            return false;
+        }
+    }
+
+    private static final class LoadResult {
+        final long[] latencyNanos;
+        final long elapsedNanos;
+        final int failures;
+
+        LoadResult(long[] latencyNanos, long elapsedNanos, int failures) {
+            this.latencyNanos = latencyNanos;
+            this.elapsedNanos = elapsedNanos;
+            this.failures = failures;
+        }
+
+        double queriesPerSecond() {
+            return latencyNanos.length * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        /**
+         * @param fraction a fraction of queries, such as 0.99.
+         * @return the latency that fraction of queries finished within, in microseconds.
+         */
+        long percentileMicros(double fraction) {
+            int index = (int) Math.ceil(fraction * latencyNanos.length) - 1;
+            return TimeUnit.NANOSECONDS.toMicros(latencyNanos[Math.max(index, 0)]);
+        }
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        return Integer.getInteger(PROPERTY_PREFIX + name, defaultValue);
+    }
+
+    @Before
+    public void setUp() {
+        Application application = RuntimeEnvironment.getApplication();
+        ShadowPackageManager packageManager = shadowOf(application.getPackageManager());
+        for (int i = 0; i < runtimes; ++i) {
+            String packageName = packagePrefix + i;
+
+            ApplicationInfo applicationInfo = new ApplicationInfo();
+            applicationInfo.packageName = packageName;
+            applicationInfo.nativeLibraryDir = "/data/app/" + packageName + "/lib/" + abi;
+
+            PackageInfo packageInfo = new PackageInfo();
+            packageInfo.packageName = packageName;
+            packageInfo.applicationInfo = applicationInfo;
+            packageInfo.lastUpdateTime = i;
+            packageManager.installPackage(packageInfo);
+
+            Bundle metaData = new Bundle();
+            metaData.putString("org.khronos.openxr.OpenXRRuntime.SoFilename", "libopenxr_loadtest.so");
+            metaData.putInt("org.khronos.openxr.OpenXRRuntime.MajorVersion", 1);
+            for (String function : functionNames) {
+                metaData.putString("org.khronos.openxr.OpenXRRuntime.Functions." + function,
+                        "loadtest_" + function);
+            }
+            ResolveInfo resolveInfo = new ResolveInfo();
+            resolveInfo.serviceInfo = new ServiceInfo();
+            resolveInfo.serviceInfo.packageName = packageName;
+            resolveInfo.serviceInfo.name = packageName + ".RuntimeService";
+            resolveInfo.serviceInfo.applicationInfo = applicationInfo;
+            resolveInfo.serviceInfo.metaData = metaData;
+            packageManager.addResolveInfoForIntent(new Intent(OpenXRLoaderUtils.serviceName), resolveInfo);
+        }
+        RuntimeRepositoryHolder.setForTesting(new FixedSelectionRepository(selectedPackage));
+    }
+
+    @After
+    public void tearDown() {
+        RuntimeRepositoryHolder.setForTesting(null);
+        RuntimeRegistry.resetForTesting();
+    }
+
+    @Test
+    public void installableBroker() throws Exception {
+        // Warm-up starts in onCreate() and races the storm, as it would on a device.
+        ContentProvider broker = Robolectric.buildContentProvider(InstallableRuntimeBroker.class)
+                .create(BrokerContract.AUTHORITY)
+                .get();
+        checkThresholds("InstallableRuntimeBroker", runLoad(broker));
+    }
+
+    @Test
+    public void uncachedBroker() throws Exception {
+        ContentProvider broker = Robolectric.buildContentProvider(UncachedBroker.class)
+                .create(BrokerContract.AUTHORITY)
+                .get();
+        checkThresholds("Uncached AbstractRuntimeBroker", runLoad(broker));
+    }
+
+    private LoadResult runLoad(ContentProvider broker) throws Exception {
+        Uri activeRuntimeUri = BrokerContract.ActiveRuntime.makeContentUri(
+                BrokerContract.BrokerType.RuntimeBroker, 1, abi);
+        Uri functionsUri = BrokerContract.Functions.makeContentUri(
+                BrokerContract.BrokerType.RuntimeBroker, 1, selectedPackage, abi);
+        long[][] latencyNanos = new long[threads][queriesPerThread];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> clients = new ArrayList<>(threads);
+            for (int t = 0; t < threads; ++t) {
+                long[] latencies = latencyNanos[t];
+                Random random = new Random(t);
+                clients.add(executor.submit(() -> {
+                    start.await();
+                    for (int q = 0; q < queriesPerThread; ++q) {
+                        boolean functions = random.nextInt(100) < functionsPercent;
+                        long queryStart = System.nanoTime();
+                        boolean ok = functions
+                                ? queryFunctions(broker, functionsUri)
+                                : queryActiveRuntime(broker, activeRuntimeUri);
+                        latencies[q] = System.nanoTime() - queryStart;
+                        if (!ok) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long loadStart = System.nanoTime();
+            start.countDown();
+            for (Future<?> client : clients) {
+                client.get();
+            }
+            long elapsedNanos = System.nanoTime() - loadStart;
+
+            long[] all = new long[threads * queriesPerThread];
+            for (int t = 0; t < threads; ++t) {
+                System.arraycopy(latencyNanos[t], 0, all, t * queriesPerThread, queriesPerThread);
+            }
+            Arrays.sort(all);
+            return new LoadResult(all, elapsedNanos, failures.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean queryActiveRuntime(ContentProvider broker, Uri uri) {
+        try (Cursor cursor = broker.query(uri, activeRuntimeProjection, null, null, null)) {
+            return cursor != null && cursor.moveToFirst()
+                    && selectedPackage.equals(cursor.getString(0));
+        }
+    }
+
+    private boolean queryFunctions(ContentProvider broker, Uri uri) {
+        try (Cursor cursor = broker.query(uri, functionsProjection, null, null, null)) {
+            return cursor != null && cursor.getCount() == functionNames.length;
+        }
+    }
+
+    private void checkThresholds(String name, LoadResult result) {
+        long p50 = result.percentileMicros(0.50);
+        long p99 = result.percentileMicros(0.99);
+        long p999 = result.percentileMicros(0.999);
+        String report = String.format(Locale.ROOT,
+                "%s: %d queries from %d threads over %d runtimes in %d ms: "
+                        + "%.0f queries/s, p50 %d us, p99 %d us, p999 %d us",
+                name, result.latencyNanos.length, threads, runtimes,
+                TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos),
+                result.queriesPerSecond(), p50, p99, p999);
+        Log.i(TAG, report);
+
+        assertWithMessage("%s: failed queries", report).that(result.failures).isEqualTo(0);
+        assertWithMessage("%s: queries per second", report)
+                .that(result.queriesPerSecond()).isAtLeast((double) minQueriesPerSecond);
+        assertWithMessage("%s: p50 latency (us)", report).that(p50).isAtMost(maxP50Micros);
+        assertWithMessage("%s: p99 latency (us)", report).that(p99).isAtMost(maxP99Micros);
+        assertWithMessage("%s: p999 latency (us)", report).that(p999).isAtMost(maxP999Micros);
+    }
+}
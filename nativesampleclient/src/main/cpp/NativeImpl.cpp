@@ -162,6 +162,32 @@ namespace
         };
     } // namespace functions
 
+    /**
+     * Contains details for the org.khronos.openxr.runtime_broker.utils.NativeRuntimeLookup class.
+     * <p>
+     * Apps that include the broker utils library can use it to do the whole lookup with a single
+     * JNI call, instead of one per cursor operation.
+     */
+    namespace native_runtime_lookup
+    {
+        static constexpr auto CLASS_NAME = "org/khronos/openxr/runtime_broker/utils/NativeRuntimeLookup";
+
+        /**
+         * Static method returning the active runtime packed into a String array, or null.
+         */
+        static constexpr auto GET_ACTIVE_RUNTIME =
+            "getActiveRuntime(Landroid/content/Context;ZILjava/lang/String;)[Ljava/lang/String;";
+
+        static constexpr long INDEX_PACKAGE_NAME = 0;
+        static constexpr long INDEX_NATIVE_LIB_DIR = 1;
+        static constexpr long INDEX_SO_FILENAME = 2;
+
+        /**
+         * Function names and symbol names alternate from this index to the end of the array.
+         */
+        static constexpr long INDEX_FIRST_FUNCTION = 3;
+    } // namespace native_runtime_lookup
+
 } // namespace
 
 static inline jni::Array<std::string> makeArray(std::initializer_list<const char *> &&list)
@@ -190,6 +216,50 @@ static constexpr auto ABI = "x86_64";
 #error "Unknown ABI!"
 #endif
 
+/**
+ * Look up the active runtime through NativeRuntimeLookup, if this app includes it.
+ *
+ * @param context The Context to pass to the lookup.
+ * @param[out] message Description of the active runtime, left empty if there is none.
+ * @return false if NativeRuntimeLookup is not available, so the cursor-based lookup should be used.
+ */
+static bool getRuntimeFromBatchLookup(jobject context, std::string &message)
+{
+    jni::Class lookup;
+    try
+    {
+        lookup = jni::Class{native_runtime_lookup::CLASS_NAME};
+    }
+    catch (jni::NameResolutionException const &)
+    {
+        return false;
+    }
+    auto result = lookup.call<jni::Object>(native_runtime_lookup::GET_ACTIVE_RUNTIME,
+                                           jni::Object{context}, false, 1, std::string{ABI});
+    if (result.isNull())
+    {
+        __android_log_write(ANDROID_LOG_INFO, TAG, "No active runtime from batch lookup.");
+        return true;
+    }
+    jni::Array<std::string> packed{(jarray)result.getHandle()};
+    long functionCount = (packed.getLength() - native_runtime_lookup::INDEX_FIRST_FUNCTION) / 2;
+
+    std::ostringstream os;
+    os << "Found runtime so " << packed.getElement(native_runtime_lookup::INDEX_SO_FILENAME)
+       << " in " << packed.getElement(native_runtime_lookup::INDEX_NATIVE_LIB_DIR)
+       << " of package " << packed.getElement(native_runtime_lookup::INDEX_PACKAGE_NAME);
+    if (functionCount > 0)
+    {
+        os << " with " << functionCount << " function/symbol mapping(s) defined";
+    }
+    else
+    {
+        os << " with no function/symbol mapping changes";
+    }
+    message = os.str();
+    return true;
+}
+
 extern "C" jstring
 Java_org_khronos_openxr_nativesampleclient_MainActivity_getRuntime(JNIEnv *env, jclass clazz,
                                                                    jobject context)
@@ -197,6 +267,12 @@ Java_org_khronos_openxr_nativesampleclient_MainActivity_getRuntime(JNIEnv *env,
     jni::init(env);
     try
     {
+        std::string message;
+        if (getRuntimeFromBatchLookup(context, message))
+        {
+            return message.empty() ? nullptr : env->NewStringUTF(message.c_str());
+        }
+
         jni::Array<std::string> projection = makeArray(
             {active_runtime::Columns::ID,
              active_runtime::Columns::PACKAGE_NAME,
@@ -4,23 +4,53 @@
 package org.khronos.openxr.system_runtime_broker
 
 import android.content.Context
-import org.khronos.openxr.runtime_broker.utils.RuntimeChooser
+import org.khronos.openxr.broker_lib.ExpiringRuntimeChooser
+import org.khronos.openxr.broker_lib.ManifestRuntimeChooser
 import org.khronos.openxr.runtime_broker.utils.RuntimeData
+import java.io.File
+
+class SystemRuntimeChooser : ExpiringRuntimeChooser {
+    @Volatile
+    private var manifestChooser: ManifestRuntimeChooser? = null
 
-class SystemRuntimeChooser : RuntimeChooser {
     /**
      * Get the currently active runtime for a given specification major version.
      *
      * The first one of these is the preferred/"active" runtime
      *
+     * By default, this reads the manifest named by the system_runtime_manifest_path resource:
+     * see [ManifestRuntimeChooser] for its format. OEMs may overlay that resource, or implement
+     * whatever else is needed to access their runtime here, and return a populated RuntimeData
+     * object.
+     *
      * @param context      a Context to use when searching for runtimes.
      * @param majorVersion a major version number of OpenXR.
      * @param abi          the ABI to return data for.
      * @return the active runtime, or null if something went wrong or none were found.
      */
     override fun getActiveRuntime(context: Context, majorVersion: Int, abi: String): RuntimeData? {
-        // OEMs should implement whatever is needed to access their runtime here,
-        // and return a populated RuntimeData object.
-        return null
+        return getManifestChooser(context).getActiveRuntime(context, majorVersion, abi)
+    }
+
+    /**
+     * Answers from the manifest are cached until the manifest is checked again. OEMs replacing
+     * [getActiveRuntime] should replace this too, with lifetimes that suit their lookup.
+     */
+    override fun getExpiringRuntimes(
+        context: Context,
+        majorVersions: IntArray,
+        abis: Array<String>,
+        cacheLifetimesMillis: LongArray
+    ): Array<RuntimeData?> {
+        return getManifestChooser(context).getExpiringRuntimes(context, majorVersions, abis, cacheLifetimesMillis)
+    }
+
+    private fun getManifestChooser(context: Context): ManifestRuntimeChooser {
+        manifestChooser?.let { return it }
+        synchronized(this) {
+            return manifestChooser ?: ManifestRuntimeChooser(
+                File(context.getString(R.string.system_runtime_manifest_path))
+            ).also { manifestChooser = it }
+        }
     }
-}
\ No newline at end of file
+}
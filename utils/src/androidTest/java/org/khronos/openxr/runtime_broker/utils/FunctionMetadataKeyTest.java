@@ -0,0 +1,66 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+public class FunctionMetadataKeyTest {
+
+    private static final String prefix = "org.khronos.openxr.OpenXRRuntime.Functions.";
+    /**
+     * The function name grammar, as a regex: the reference for the hand-written scanner.
+     */
+    private static final Pattern functionNameRegex = Pattern.compile("xr[A-Z]([a-z0-9]*)([0-9A-Z]([a-z0-9]*))*");
+    /**
+     * Characters to build random names from: mostly valid ones, plus some that are close to
+     * valid (punctuation next to the ASCII ranges, non-ASCII letters and digits).
+     */
+    private static final String alphabet = "xrXRabczABCZ0189_-.@[`{/:éÉ٣Α";
+    private static final int corpusSize = 20000;
+
+    @Test
+    public void knownKeys() {
+        assertThat(RuntimeData.parseFunctionMetadataKey(prefix + "xrGetInstanceProcAddr"))
+                .isEqualTo("xrGetInstanceProcAddr");
+        assertThat(RuntimeData.parseFunctionMetadataKey(prefix + "xrCreateVulkanInstanceKHR"))
+                .isEqualTo("xrCreateVulkanInstanceKHR");
+        assertThat(RuntimeData.parseFunctionMetadataKey(prefix + "xrA")).isEqualTo("xrA");
+        assertThat(RuntimeData.parseFunctionMetadataKey(prefix + "xr")).isNull();
+        assertThat(RuntimeData.parseFunctionMetadataKey(prefix + "xrget")).isNull();
+        assertThat(RuntimeData.parseFunctionMetadataKey(prefix + "xrGet_Instance")).isNull();
+        assertThat(RuntimeData.parseFunctionMetadataKey(prefix)).isNull();
+        assertThat(RuntimeData.parseFunctionMetadataKey("xrGetInstanceProcAddr")).isNull();
+        assertThat(RuntimeData.parseFunctionMetadataKey("org.khronos.openxr.OpenXRRuntime.SoFilename"))
+                .isNull();
+    }
+
+    @Test
+    public void randomizedParityWithRegex() {
+        // Fixed seed, so failures are reproducible.
+        Random random = new Random(0x0e7e5);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < corpusSize; ++i) {
+            builder.setLength(0);
+            // Start most names with "xr" and an uppercase letter, to exercise the whole grammar.
+            if (random.nextInt(4) != 0) {
+                builder.append("xr");
+                builder.append((char) ('A' + random.nextInt(26)));
+            }
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; ++j) {
+                builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String name = builder.toString();
+            String expected = functionNameRegex.matcher(name).matches() ? name : null;
+            assertWithMessage("function name '%s'", name)
+                    .that(RuntimeData.parseFunctionMetadataKey(prefix + name))
+                    .isEqualTo(expected);
+        }
+    }
+}
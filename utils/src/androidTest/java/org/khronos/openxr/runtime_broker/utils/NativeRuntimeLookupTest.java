@@ -0,0 +1,44 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+
+package org.khronos.openxr.runtime_broker.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class NativeRuntimeLookupTest {
+
+    @Test
+    public void pack() {
+        Map<String, String> functions = new HashMap<>();
+        functions.put("xrNegotiateLoaderRuntimeInterface", "example_xrNegotiateLoaderRuntimeInterface");
+        functions.put("xrCreateInstance", "example_xrCreateInstance");
+        RuntimeData runtime = new RuntimeData("org.khronos.example", "/data/app/example/lib/arm64",
+                "libopenxr_example.so", 1, functions, BrokerContract.BrokerType.RuntimeBroker);
+
+        String[] packed = NativeRuntimeLookup.pack(runtime);
+
+        assertThat(packed).asList().containsExactly(
+                "org.khronos.example",
+                "/data/app/example/lib/arm64",
+                "libopenxr_example.so",
+                "xrCreateInstance", "example_xrCreateInstance",
+                "xrNegotiateLoaderRuntimeInterface", "example_xrNegotiateLoaderRuntimeInterface"
+        ).inOrder();
+    }
+
+    @Test
+    public void packWithoutFunctions() {
+        RuntimeData runtime = new RuntimeData("org.khronos.example", "/data/app/example/lib/arm64",
+                "libopenxr_example.so", 1, new HashMap<>(), null);
+
+        String[] packed = NativeRuntimeLookup.pack(runtime);
+
+        assertThat(packed).hasLength(NativeRuntimeLookup.INDEX_FIRST_FUNCTION);
+        assertThat(packed[NativeRuntimeLookup.INDEX_SO_FILENAME]).isEqualTo("libopenxr_example.so");
+    }
+}
@@ -0,0 +1,67 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+
+package org.khronos.openxr.runtime_broker.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class RuntimeDescriptorTest {
+
+    private static RuntimeData makeRuntime() {
+        Map<String, String> functions = new HashMap<>();
+        functions.put("xrCreateInstance", "example_xrCreateInstance");
+        functions.put("xrGetInstanceProcAddr", "example_xrGetInstanceProcAddr");
+        return new RuntimeData("org.khronos.example", "/data/app/example/lib/arm64",
+                "libopenxr_example.so", 1, functions, BrokerContract.BrokerType.SystemRuntimeBroker);
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        RuntimeData runtime = makeRuntime();
+        byte[] encoded = RuntimeDescriptor.encode(runtime);
+
+        RuntimeData decoded = RuntimeDescriptor.read(new ByteArrayInputStream(encoded),
+                BrokerContract.BrokerType.SystemRuntimeBroker);
+
+        assertThat(decoded.packageName).isEqualTo(runtime.packageName);
+        assertThat(decoded.nativeLibraryDir).isEqualTo(runtime.nativeLibraryDir);
+        assertThat(decoded.soFilename).isEqualTo(runtime.soFilename);
+        assertThat(decoded.majorVersion).isEqualTo(runtime.majorVersion);
+        assertThat(decoded.functions).containsExactlyEntriesIn(runtime.functions).inOrder();
+        assertThat(decoded.brokerType).isEqualTo(BrokerContract.BrokerType.SystemRuntimeBroker);
+    }
+
+    @Test
+    public void rejectMalformed() {
+        byte[] encoded = RuntimeDescriptor.encode(makeRuntime());
+
+        assertRejected(Arrays.copyOf(encoded, encoded.length - 1));
+
+        byte[] newerVersion = encoded.clone();
+        ByteBuffer.wrap(newerVersion).putInt(4, RuntimeDescriptor.FORMAT_VERSION + 1);
+        assertRejected(newerVersion);
+
+        byte[] badMagic = encoded.clone();
+        badMagic[0] = 0;
+        assertRejected(badMagic);
+    }
+
+    private static void assertRejected(byte[] descriptor) {
+        try {
+            RuntimeDescriptor.decode(ByteBuffer.wrap(descriptor), null);
+            fail("Malformed descriptor was accepted");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
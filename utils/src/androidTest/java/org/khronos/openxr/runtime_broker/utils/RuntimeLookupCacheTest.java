@@ -0,0 +1,109 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+
+package org.khronos.openxr.runtime_broker.utils;
+
+import android.content.Context;
+import android.os.Build;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Cached lookups go stale without any change notification, as when the broker process is not
+ * running while a runtime is updated or removed.
+ */
+public class RuntimeLookupCacheTest {
+    private static final BrokerContract.BrokerType brokerType = BrokerContract.BrokerType.RuntimeBroker;
+    private static final String abi = Build.SUPPORTED_ABIS[0];
+
+    private Context context;
+    private final AtomicLong now = new AtomicLong(1000);
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() {
+        RuntimeLookupCache.setForTesting(null, null);
+    }
+
+    /**
+     * Make the cache look up runtimes from the given package, counting lookups.
+     *
+     * @param packageName the runtime package, or null for "no runtime" answers.
+     */
+    private void lookUpFrom(String packageName) {
+        RuntimeLookupCache.setForTesting((type, lookupContext, majorVersion, lookupAbi) -> {
+            lookups.incrementAndGet();
+            if (packageName == null) {
+                return null;
+            }
+            return new RuntimeData(packageName, "/data/app/" + packageName + "/lib/" + lookupAbi,
+                    "libopenxr_example.so", majorVersion, Collections.emptyMap(), type);
+        }, now::get);
+    }
+
+    private RuntimeData getRuntime() {
+        return RuntimeLookupCache.getRuntime(brokerType, context, 1, abi);
+    }
+
+    @Test
+    public void runtimeIsCachedUntilMaxAge() {
+        lookUpFrom(context.getPackageName());
+
+        assertThat(getRuntime().packageName).isEqualTo(context.getPackageName());
+        now.addAndGet(RuntimeLookupCache.MAX_AGE_MILLIS - 1);
+        assertThat(getRuntime().packageName).isEqualTo(context.getPackageName());
+        assertThat(lookups.get()).isEqualTo(1);
+
+        now.addAndGet(1);
+        assertThat(getRuntime().packageName).isEqualTo(context.getPackageName());
+        assertThat(lookups.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void noRuntimeIsCachedUntilMaxAge() {
+        lookUpFrom(null);
+
+        assertThat(getRuntime()).isNull();
+        assertThat(getRuntime()).isNull();
+        assertThat(lookups.get()).isEqualTo(1);
+
+        now.addAndGet(RuntimeLookupCache.MAX_AGE_MILLIS);
+        assertThat(getRuntime()).isNull();
+        assertThat(lookups.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void runtimeFromInvisiblePackageIsCached() {
+        // Stands for a runtime package the app cannot see.
+        lookUpFrom("org.khronos.openxr.test.not_installed");
+
+        getRuntime();
+        getRuntime();
+        assertThat(lookups.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidateDropsCachedRuntime() {
+        lookUpFrom(context.getPackageName());
+
+        getRuntime();
+        RuntimeLookupCache.invalidate();
+        getRuntime();
+        assertThat(lookups.get()).isEqualTo(2);
+    }
+}
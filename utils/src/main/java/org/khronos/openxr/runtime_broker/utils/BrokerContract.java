@@ -40,6 +40,26 @@ public final class BrokerContract {
         throw new IllegalArgumentException();
     }
 
+    /**
+     * Create the content URI that is the parent of all active runtime and functions URIs.
+     * <p>
+     * Brokers call {@code ContentResolver.notifyChange()} on this URI whenever the active runtime
+     * or its functions may have changed, for instance when the user selects another runtime or a
+     * runtime package is installed, updated or removed. Register a ContentObserver for it to
+     * find out when cached lookups become stale.
+     *
+     * @param brokerType The broker type (regular/installable or system) to observe
+     * @return A content URI for the /openxr path of that broker.
+     */
+    @NonNull
+    public static Uri makeBaseContentUri(BrokerType brokerType) {
+        return new Uri.Builder()
+                .scheme(CONTENT_SCHEME)
+                .authority(brokerToAuthority(brokerType))
+                .appendPath(BASE_PATH)
+                .build();
+    }
+
     public enum BrokerType {
         RuntimeBroker,
         SystemRuntimeBroker,
@@ -61,6 +81,14 @@ public final class BrokerContract {
          */
         public static final String TABLE_PATH = "active";
 
+        /**
+         * MIME type to pass to {@code ContentResolver.openTypedAssetFileDescriptor()} with this
+         * URI to read the active runtime and its functions as a {@link RuntimeDescriptor}, instead
+         * of querying the /active and /functions cursors.
+         */
+        public static final String DESCRIPTOR_MIME_TYPE =
+                "application/vnd.org.khronos.openxr.runtime-descriptor";
+
         /**
          * Create a content URI for querying the data on the active runtime for a
          * given major version of OpenXR.
@@ -185,5 +213,213 @@ public final class BrokerContract {
         }
     }
 
+    /**
+     * Contains details for the /openxr/runtimes/active?major_version=[major_ver]&amp;abi=[abi] URI.
+     * <p>
+     * This URI represents a "table" with one row per requested combination of major version and
+     * ABI, for the same active runtime data as {@link ActiveRuntime}. All combinations are
+     * resolved in one query, instead of one query per combination. Rows for combinations without
+     * an active runtime have null package name, library directory and filename columns.
+     * <p>
+     * The {@link #QUERY_MAJOR_VERSION} query parameter is required, and may be repeated. The
+     * {@link #QUERY_ABI} parameter may be repeated, and defaults to all ABIs supported by the
+     * broker's device. Rows are ordered by major version, then by ABI, as requested.
+     */
+    public static final class BulkActiveRuntime {
+
+        /**
+         * Query parameter for a major version of OpenXR.
+         */
+        public static final String QUERY_MAJOR_VERSION = "major_version";
+        /**
+         * Query parameter for an Android ABI.
+         */
+        public static final String QUERY_ABI = "abi";
+
+        // do not instantiate
+        private BulkActiveRuntime() {
+        }
+
+        /**
+         * Create a content URI for querying the data on the active runtime for several
+         * major versions of OpenXR and ABIs.
+         *
+         * @param brokerType The broker type (regular/installable or system) to retrieve paths for
+         * @param majorVers  The major versions of OpenXR.
+         * @param abis       The Android ABIs to retrieve paths for, or null for all supported ABIs.
+         * @return A content URI for the table, one row per combination.
+         */
+        @NonNull
+        public static Uri makeContentUri(BrokerType brokerType, int[] majorVers, @Nullable String[] abis) {
+            Uri.Builder builder = new Uri.Builder();
+            builder.scheme(CONTENT_SCHEME)
+                    .authority(brokerToAuthority(brokerType))
+                    .appendPath(BASE_PATH)
+                    .appendPath(RUNTIMES_PATH)
+                    .appendPath(ActiveRuntime.TABLE_PATH);
+            for (int majorVer : majorVers) {
+                builder.appendQueryParameter(QUERY_MAJOR_VERSION, String.valueOf(majorVer));
+            }
+            if (abis != null) {
+                for (String abi : abis) {
+                    builder.appendQueryParameter(QUERY_ABI, abi);
+                }
+            }
+            return builder.build();
+        }
+
+        /**
+         * Contains the constants used for provider response columns in the bulk /active URI.
+         */
+        public static final class Columns implements BaseColumns {
+            /**
+             * Constant for the MAJOR_VERSION column name, containing the major version of OpenXR
+             * for this row.
+             */
+            public static final String MAJOR_VERSION = "major_version";
+            /**
+             * Constant for the ABI column name, containing the ABI for this row.
+             */
+            public static final String ABI = "abi";
+            /**
+             * Same as {@link ActiveRuntime.Columns#PACKAGE_NAME}.
+             */
+            public static final String PACKAGE_NAME = ActiveRuntime.Columns.PACKAGE_NAME;
+            /**
+             * Same as {@link ActiveRuntime.Columns#NATIVE_LIB_DIR}.
+             */
+            public static final String NATIVE_LIB_DIR = ActiveRuntime.Columns.NATIVE_LIB_DIR;
+            /**
+             * Same as {@link ActiveRuntime.Columns#SO_FILENAME}.
+             */
+            public static final String SO_FILENAME = ActiveRuntime.Columns.SO_FILENAME;
+            /**
+             * Same as {@link ActiveRuntime.Columns#HAS_FUNCTIONS}.
+             */
+            public static final String HAS_FUNCTIONS = ActiveRuntime.Columns.HAS_FUNCTIONS;
+
+            // do not instantiate
+            private Columns() {
+            }
+        }
+    }
+
+    /**
+     * Contains details for the ContentProvider.call() interface.
+     * <p>
+     * This returns the active runtime and its function remapping in a single round trip, instead
+     * of querying the /active URI and then the /functions URI. Brokers that do not implement it
+     * return null, in which case clients should fall back to the cursor-based URIs.
+     */
+    public static final class Call {
+        /**
+         * Method name to get the active runtime.
+         * <p>
+         * Takes no arg, and extras containing {@link #EXTRA_MAJOR_VERSION} and optionally
+         * {@link #EXTRA_ABI}. Returns a Bundle containing the {@link ActiveRuntime.Columns#PACKAGE_NAME},
+         * {@link ActiveRuntime.Columns#NATIVE_LIB_DIR} and {@link ActiveRuntime.Columns#SO_FILENAME}
+         * strings, plus the {@link #EXTRA_FUNCTION_NAMES} and {@link #EXTRA_SYMBOL_NAMES} string
+         * arrays. If there is no active runtime, the returned Bundle is empty.
+         */
+        public static final String METHOD_GET_ACTIVE_RUNTIME = "get_active_runtime";
+        /**
+         * Int extra: the major version of OpenXR.
+         */
+        public static final String EXTRA_MAJOR_VERSION = "major_version";
+        /**
+         * String extra: the Android ABI to retrieve paths for. Defaults to the primary ABI of the
+         * broker if absent.
+         */
+        public static final String EXTRA_ABI = "abi";
+        /**
+         * String array result: specified function names, parallel to {@link #EXTRA_SYMBOL_NAMES}.
+         */
+        public static final String EXTRA_FUNCTION_NAMES = "function_names";
+        /**
+         * String array result: symbol names, parallel to {@link #EXTRA_FUNCTION_NAMES}.
+         */
+        public static final String EXTRA_SYMBOL_NAMES = "symbol_names";
+
+        // do not instantiate
+        private Call() {
+        }
+
+        /**
+         * Create the URI to pass to ContentResolver.call().
+         *
+         * @param brokerType The broker type (regular/installable or system) to call
+         * @return A content URI for the broker itself.
+         */
+        @NonNull
+        public static Uri makeContentUri(BrokerType brokerType) {
+            return new Uri.Builder()
+                    .scheme(CONTENT_SCHEME)
+                    .authority(brokerToAuthority(brokerType))
+                    .build();
+        }
+    }
+
+    /**
+     * Contains details for the read-only /openxr/stats URI.
+     * <p>
+     * This URI represents a "table" of broker statistics since the broker process started, one
+     * row per named value: lookup counters, time spent choosing runtimes, and latency histograms
+     * per table type. The same data is printed by
+     * {@code adb shell dumpsys activity provider <broker component>}.
+     * <p>
+     * Names and their order may change between broker versions: this is for diagnostics only.
+     */
+    public static final class Stats {
+
+        /**
+         * Final path component to this URI.
+         */
+        public static final String TABLE_PATH = "stats";
+
+        // do not instantiate
+        private Stats() {
+        }
+
+        /**
+         * Create a content URI for querying the statistics of a broker.
+         *
+         * @param brokerType The broker type (regular/installable or system) to retrieve stats for
+         * @return A content URI for the entire table.
+         */
+        @NonNull
+        public static Uri makeContentUri(BrokerType brokerType) {
+            return new Uri.Builder()
+                    .scheme(CONTENT_SCHEME)
+                    .authority(brokerToAuthority(brokerType))
+                    .appendPath(BASE_PATH)
+                    .appendPath(TABLE_PATH)
+                    .build();
+        }
+
+        /**
+         * Contains the constants used for provider response columns in the /stats URI.
+         */
+        public static final class Columns implements BaseColumns {
+            /**
+             * Constant for the NAME column name, containing the name of the value, such as
+             * "cache_hits" or "latency.active_runtime.lt_1024us".
+             * <p>
+             * Each latency histogram has "count" and "total_us" values, and one value per
+             * non-empty bucket: "lt_&lt;N&gt;us" counts durations of at least N/2 and less than
+             * N microseconds (N is a power of two, up to 1048576, and "lt_1us" counts durations
+             * under 1 microsecond), and "ge_1048576us" counts longer durations.
+             */
+            public static final String NAME = "name";
+            /**
+             * Constant for the VALUE column name, containing the value as a long.
+             */
+            public static final String VALUE = "value";
+
+            // do not instantiate
+            private Columns() {
+            }
+        }
+    }
+
 
 }
@@ -0,0 +1,66 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker.utils
+
+import android.util.Log
+import androidx.annotation.VisibleForTesting
+
+/**
+ * Logging for broker and client code on the query path.
+ *
+ * Each call checks [Log.isLoggable] first, and only builds its message if the level is enabled,
+ * so a disabled log call costs a property lookup and no string formatting. Messages are lambdas,
+ * inlined at the call site, so nothing is allocated for them either.
+ *
+ * Tags must be at most 23 characters: Log.isLoggable() throws for longer tags before Android 8.
+ * Debug and verbose messages are disabled by default, and can be enabled per tag with
+ * `adb shell setprop log.tag.<tag> DEBUG`.
+ */
+object BrokerLog {
+    /**
+     * Enable every level for every tag, so tests can compare against the cost of formatting.
+     */
+    @VisibleForTesting
+    @JvmStatic
+    @Volatile
+    var forceLoggable = false
+
+    @JvmStatic
+    fun isLoggable(tag: String, level: Int): Boolean = forceLoggable || Log.isLoggable(tag, level)
+
+    inline fun v(tag: String, message: () -> String) {
+        if (isLoggable(tag, Log.VERBOSE)) {
+            Log.v(tag, message())
+        }
+    }
+
+    inline fun d(tag: String, message: () -> String) {
+        if (isLoggable(tag, Log.DEBUG)) {
+            Log.d(tag, message())
+        }
+    }
+
+    inline fun i(tag: String, message: () -> String) {
+        if (isLoggable(tag, Log.INFO)) {
+            Log.i(tag, message())
+        }
+    }
+
+    inline fun w(tag: String, message: () -> String) {
+        if (isLoggable(tag, Log.WARN)) {
+            Log.w(tag, message())
+        }
+    }
+
+    inline fun w(tag: String, throwable: Throwable, message: () -> String) {
+        if (isLoggable(tag, Log.WARN)) {
+            Log.w(tag, message(), throwable)
+        }
+    }
+
+    inline fun e(tag: String, message: () -> String) {
+        if (isLoggable(tag, Log.ERROR)) {
+            Log.e(tag, message())
+        }
+    }
+}
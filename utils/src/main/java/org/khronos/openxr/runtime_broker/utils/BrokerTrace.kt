@@ -0,0 +1,79 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+package org.khronos.openxr.runtime_broker.utils
+
+import android.os.Build
+import android.os.Trace
+
+/**
+ * Trace section and counter names for the runtime brokers, for systrace and Perfetto.
+ *
+ * The names are stable, so tools can match them across releases. Sections use
+ * android.os.Trace, so they are only recorded while app tracing is enabled for the process.
+ * Counters need Android 10, and are skipped on older versions.
+ */
+object BrokerTrace {
+    /** Parsing a query URI. */
+    const val PARSE_URI = "OpenXRBroker.parseUri"
+
+    /** A call to the broker's RuntimeChooser. */
+    const val CHOOSE_RUNTIME = "OpenXRBroker.chooseRuntime"
+
+    /** Asking PackageManager for runtime services. */
+    const val PACKAGE_SCAN = "OpenXRBroker.packageScan"
+
+    /** Turning a runtime service's meta-data into a RuntimeData. */
+    const val PARSE_METADATA = "OpenXRBroker.parseMetadata"
+
+    /** Finding installed runtimes in the runtime registry. */
+    const val FIND_RUNTIMES = "OpenXRBroker.findRuntimes"
+
+    /** Reading the user's runtime selection. */
+    const val READ_SELECTION = "OpenXRBroker.readSelection"
+
+    /** Loading application labels, icons and package info for the runtime list. */
+    const val LOAD_RUNTIME_DETAILS = "OpenXRBroker.loadRuntimeDetails"
+
+    /** Filling a result cursor. */
+    const val BUILD_CURSOR = "OpenXRBroker.buildCursor"
+
+    /** Counter: percentage of lookups answered from the broker's cache. */
+    const val CACHE_HIT_PERCENT = "OpenXRBroker.cacheHitPercent"
+
+    /** Counter: queries being handled right now. */
+    const val IN_FLIGHT_QUERIES = "OpenXRBroker.inFlightQueries"
+
+    @JvmStatic
+    fun beginSection(name: String) = Trace.beginSection(name)
+
+    @JvmStatic
+    fun endSection() = Trace.endSection()
+
+    /**
+     * Run block inside a trace section.
+     */
+    inline fun <T> section(name: String, block: () -> T): T {
+        Trace.beginSection(name)
+        try {
+            return block()
+        } finally {
+            Trace.endSection()
+        }
+    }
+
+    /**
+     * @return true if counters are being recorded, so that their values are worth computing.
+     */
+    @JvmStatic
+    fun isCounterEnabled(): Boolean = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && Trace.isEnabled()
+
+    /**
+     * Set a counter, if counters are being recorded.
+     */
+    @JvmStatic
+    fun setCounter(name: String, value: Long) {
+        if (isCounterEnabled()) {
+            Trace.setCounter(name, value)
+        }
+    }
+}
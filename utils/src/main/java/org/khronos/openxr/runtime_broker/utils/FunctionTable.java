@@ -0,0 +1,123 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+
+package org.khronos.openxr.runtime_broker.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable function name to symbol name table, sorted by function name.
+ * <p>
+ * Stored as parallel arrays, so it can be read by index without allocating.
+ */
+public final class FunctionTable {
+    /**
+     * A table with no entries.
+     */
+    public static final FunctionTable EMPTY = new FunctionTable(new String[0], new String[0]);
+
+    private final String[] functionNames;
+    private final String[] symbolNames;
+
+    private FunctionTable(@NonNull String[] functionNames, @NonNull String[] symbolNames) {
+        this.functionNames = functionNames;
+        this.symbolNames = symbolNames;
+    }
+
+    /**
+     * Build a table from a map, dropping any entries with a null key or value.
+     *
+     * @param functions a map of function names to symbol names.
+     * @return the table, sorted by function name.
+     */
+    @NonNull
+    public static FunctionTable fromMap(@NonNull Map<String, String> functions) {
+        List<Map.Entry<String, String>> entries = new ArrayList<>(functions.size());
+        for (Map.Entry<String, String> entry : functions.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                entries.add(entry);
+            }
+        }
+        if (entries.isEmpty()) {
+            return EMPTY;
+        }
+        Collections.sort(entries, (a, b) -> a.getKey().compareTo(b.getKey()));
+        int size = entries.size();
+        String[] functionNames = new String[size];
+        String[] symbolNames = new String[size];
+        for (int i = 0; i < size; ++i) {
+            functionNames[i] = entries.get(i).getKey();
+            symbolNames[i] = entries.get(i).getValue();
+        }
+        return new FunctionTable(functionNames, symbolNames);
+    }
+
+    /**
+     * @return the number of entries.
+     */
+    public int size() {
+        return functionNames.length;
+    }
+
+    /**
+     * @return true if there are no entries.
+     */
+    public boolean isEmpty() {
+        return functionNames.length == 0;
+    }
+
+    /**
+     * @param index an entry index, from 0 to size() - 1.
+     * @return the function name of that entry.
+     */
+    @NonNull
+    public String getFunctionName(int index) {
+        return functionNames[index];
+    }
+
+    /**
+     * @param index an entry index, from 0 to size() - 1.
+     * @return the symbol name of that entry.
+     */
+    @NonNull
+    public String getSymbolName(int index) {
+        return symbolNames[index];
+    }
+
+    /**
+     * @return a new array of all function names, in table order.
+     */
+    @NonNull
+    public String[] copyFunctionNames() {
+        return functionNames.clone();
+    }
+
+    /**
+     * @return a new array of all symbol names, in table order.
+     */
+    @NonNull
+    public String[] copySymbolNames() {
+        return symbolNames.clone();
+    }
+
+    /**
+     * @return an unmodifiable map with the same contents, iterating in table order.
+     */
+    @NonNull
+    public Map<String, String> toMap() {
+        if (isEmpty()) {
+            return Collections.emptyMap();
+        }
+        LinkedHashMap<String, String> map = new LinkedHashMap<>(functionNames.length * 2);
+        for (int i = 0; i < functionNames.length; ++i) {
+            map.put(functionNames[i], symbolNames[i]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+}
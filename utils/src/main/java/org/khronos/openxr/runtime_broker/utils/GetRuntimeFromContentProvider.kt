@@ -5,9 +5,15 @@ package org.khronos.openxr.runtime_broker.utils
 
 import android.content.Context
 import android.database.Cursor
-import android.util.Log
+import android.os.Bundle
 import org.khronos.openxr.runtime_broker.utils.BrokerContract.ActiveRuntime.Columns
+import java.io.FileNotFoundException
+import java.io.IOException
 
+/**
+ * Log tag for this file: function names are too long to use as tags.
+ */
+private const val TAG = "GetRuntimeFromProvider"
 
 private fun getRuntimeFunctions(
     type: BrokerContract.BrokerType,
@@ -16,7 +22,7 @@ private fun getRuntimeFunctions(
     abi: String,
     pkg: String
 ): Map<String, String> {
-    val uri = BrokerContract.Functions.makeContentUri(type, majorVersion, abi, pkg)
+    val uri = BrokerContract.Functions.makeContentUri(type, majorVersion, pkg, abi)
     val projection = arrayOf(
         BrokerContract.Functions.Columns.FUNCTION_NAME,
         BrokerContract.Functions.Columns.SYMBOL_NAME
@@ -40,7 +46,59 @@ private fun getRuntimeFunctions(
     return map
 }
 
-fun getRuntimeFromContentProvider(
+/**
+ * Ask the broker for the active runtime through ContentProvider.call().
+ *
+ * @return the result Bundle, or null if the broker does not support the call interface.
+ */
+private fun callGetActiveRuntime(
+    type: BrokerContract.BrokerType,
+    context: Context,
+    majorVersion: Int,
+    abi: String
+): Bundle? {
+    val extras = Bundle()
+    extras.putInt(BrokerContract.Call.EXTRA_MAJOR_VERSION, majorVersion)
+    extras.putString(BrokerContract.Call.EXTRA_ABI, abi)
+    return try {
+        context.contentResolver.call(
+            BrokerContract.Call.makeContentUri(type),
+            BrokerContract.Call.METHOD_GET_ACTIVE_RUNTIME,
+            null,
+            extras
+        )
+    } catch (e: IllegalArgumentException) {
+        // Unknown authority: let the cursor path report it the usual way.
+        null
+    }
+}
+
+/**
+ * Convert the result of [callGetActiveRuntime] to a RuntimeData.
+ */
+private fun runtimeFromCallResult(
+    type: BrokerContract.BrokerType,
+    majorVersion: Int,
+    result: Bundle
+): RuntimeData? {
+    val packageName = result.getString(Columns.PACKAGE_NAME) ?: return null
+    val nativeLibDir = result.getString(Columns.NATIVE_LIB_DIR) ?: return null
+    val soFilename = result.getString(Columns.SO_FILENAME) ?: return null
+    val functionNames = result.getStringArray(BrokerContract.Call.EXTRA_FUNCTION_NAMES)
+    val symbolNames = result.getStringArray(BrokerContract.Call.EXTRA_SYMBOL_NAMES)
+    val functions = mutableMapOf<String, String>()
+    if (functionNames != null && symbolNames != null) {
+        for (i in 0 until minOf(functionNames.size, symbolNames.size)) {
+            functions[functionNames[i]] = symbolNames[i]
+        }
+    }
+    return RuntimeData(packageName, nativeLibDir, soFilename, majorVersion, functions, type)
+}
+
+/**
+ * Look up the active runtime using the cursor-based /active and /functions URIs.
+ */
+private fun queryRuntimeFromContentProvider(
     type: BrokerContract.BrokerType,
     context: Context,
     majorVersion: Int,
@@ -54,7 +112,7 @@ fun getRuntimeFromContentProvider(
     )
 
     val uri = BrokerContract.ActiveRuntime.makeContentUri(type, majorVersion, abi)
-    Log.d("getRuntimeFromContentProvider", "URI: $uri")
+    BrokerLog.d(TAG) { "URI: $uri" }
     val cursor: Cursor = context.contentResolver.query(
         uri,
         projection,
@@ -64,6 +122,7 @@ fun getRuntimeFromContentProvider(
     ) ?: return null
 
     if (!cursor.moveToNext()) {
+        cursor.close()
         return null
     }
     val packageName = cursor.getString(cursor.getColumnIndex(Columns.PACKAGE_NAME))
@@ -78,4 +137,67 @@ fun getRuntimeFromContentProvider(
     val data = RuntimeData(packageName, nativeLibDir, soFilename, majorVersion, functions, type)
     cursor.close()
     return data
-}
\ No newline at end of file
+}
+
+/**
+ * Look up the active runtime from a runtime broker.
+ *
+ * Uses the single round trip ContentProvider.call() interface if the broker supports it,
+ * and falls back to querying the cursor-based URIs otherwise. Every call asks the broker: use
+ * [RuntimeLookupCache.getRuntime] for repeated lookups.
+ *
+ * @param type         the broker (installable or system) to ask.
+ * @param context      a Context to use for the lookup.
+ * @param majorVersion a major version number of OpenXR.
+ * @param abi          the ABI to return data for.
+ * @return the active runtime, or null if none was found.
+ */
+fun getRuntimeFromContentProvider(
+    type: BrokerContract.BrokerType,
+    context: Context,
+    majorVersion: Int,
+    abi: String
+): RuntimeData? {
+    val result = callGetActiveRuntime(type, context, majorVersion, abi)
+    if (result != null) {
+        return runtimeFromCallResult(type, majorVersion, result)
+    }
+    return queryRuntimeFromContentProvider(type, context, majorVersion, abi)
+}
+
+/**
+ * Look up the active runtime from a runtime broker as a [RuntimeDescriptor].
+ *
+ * Reads the active runtime and its functions from a pipe, instead of having the broker build and
+ * send cursors.
+ *
+ * @param type         the broker (installable or system) to ask.
+ * @param context      a Context to use for the lookup.
+ * @param majorVersion a major version number of OpenXR.
+ * @param abi          the ABI to return data for.
+ * @return the active runtime, or null if none was found or the broker does not serve descriptors.
+ */
+fun getRuntimeDescriptorFromContentProvider(
+    type: BrokerContract.BrokerType,
+    context: Context,
+    majorVersion: Int,
+    abi: String
+): RuntimeData? {
+    val uri = BrokerContract.ActiveRuntime.makeContentUri(type, majorVersion, abi)
+    val assetFileDescriptor = try {
+        context.contentResolver.openTypedAssetFileDescriptor(
+            uri,
+            BrokerContract.ActiveRuntime.DESCRIPTOR_MIME_TYPE,
+            null
+        )
+    } catch (e: FileNotFoundException) {
+        // No broker, no active runtime, or a broker without descriptor support.
+        null
+    } ?: return null
+    return try {
+        assetFileDescriptor.createInputStream().use { RuntimeDescriptor.read(it, type) }
+    } catch (e: IOException) {
+        BrokerLog.w(TAG) { "Could not read descriptor: ${e.message}" }
+        null
+    }
+}
@@ -0,0 +1,82 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+
+package org.khronos.openxr.runtime_broker.utils;
+
+import android.content.Context;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Runtime lookup entry point for native code.
+ * <p>
+ * Querying a broker cursor from native code takes a JNI call per cursor operation. This does the
+ * whole lookup in Java and packs the result into a single String array, so a native loader can
+ * resolve the active runtime with one JNI call plus one per array element it reads.
+ */
+@Keep
+public final class NativeRuntimeLookup {
+    /**
+     * Index of the package name in the array returned by {@link #getActiveRuntime}.
+     */
+    public static final int INDEX_PACKAGE_NAME = 0;
+    /**
+     * Index of the native library directory in the array returned by {@link #getActiveRuntime}.
+     */
+    public static final int INDEX_NATIVE_LIB_DIR = 1;
+    /**
+     * Index of the library filename in the array returned by {@link #getActiveRuntime}.
+     */
+    public static final int INDEX_SO_FILENAME = 2;
+    /**
+     * Index of the first function name in the array returned by {@link #getActiveRuntime}.
+     * Function names and their symbol names alternate from there until the end of the array.
+     */
+    public static final int INDEX_FIRST_FUNCTION = 3;
+
+    // do not instantiate
+    private NativeRuntimeLookup() {
+    }
+
+    /**
+     * Look up the active runtime, using {@link RuntimeLookupCache}.
+     * <p>
+     * JNI signature: {@code (Landroid/content/Context;ZILjava/lang/String;)[Ljava/lang/String;}
+     *
+     * @param context      a Context to use for the lookup.
+     * @param systemBroker true to ask the system broker instead of the installable one.
+     * @param majorVersion a major version number of OpenXR.
+     * @param abi          the ABI to return data for.
+     * @return the package name, native library directory and library filename, followed by
+     * pairs of function name and symbol name; or null if no runtime was found.
+     */
+    @Keep
+    @Nullable
+    public static String[] getActiveRuntime(@NonNull Context context, boolean systemBroker,
+                                            int majorVersion, @NonNull String abi) {
+        BrokerContract.BrokerType brokerType = systemBroker
+                ? BrokerContract.BrokerType.SystemRuntimeBroker
+                : BrokerContract.BrokerType.RuntimeBroker;
+        RuntimeData runtime = RuntimeLookupCache.getRuntime(brokerType, context, majorVersion, abi);
+        if (runtime == null) {
+            return null;
+        }
+        return pack(runtime);
+    }
+
+    @NonNull
+    static String[] pack(@NonNull RuntimeData runtime) {
+        FunctionTable functionTable = runtime.functionTable;
+        String[] packed = new String[INDEX_FIRST_FUNCTION + 2 * functionTable.size()];
+        packed[INDEX_PACKAGE_NAME] = runtime.packageName;
+        packed[INDEX_NATIVE_LIB_DIR] = runtime.nativeLibraryDir;
+        packed[INDEX_SO_FILENAME] = runtime.soFilename;
+        for (int i = 0; i < functionTable.size(); ++i) {
+            packed[INDEX_FIRST_FUNCTION + 2 * i] = functionTable.getFunctionName(i);
+            packed[INDEX_FIRST_FUNCTION + 2 * i + 1] = functionTable.getSymbolName(i);
+        }
+        return packed;
+    }
+}
@@ -23,4 +23,29 @@ public interface RuntimeChooser {
     RuntimeData
     getActiveRuntime(@NonNull Context context, int majorVersion, @NonNull String abi);
 
+    /**
+     * Get the currently active runtimes for several specification major versions and ABIs.
+     * <p>
+     * The default implementation calls {@link #getActiveRuntime(Context, int, String)} once per
+     * combination. Override it if runtimes can be found for all combinations at once, for
+     * instance from a single package scan.
+     *
+     * @param context       a Context to use when searching for runtimes.
+     * @param majorVersions major version numbers of OpenXR.
+     * @param abis          the ABIs to return data for.
+     * @return an array with one entry per combination, at index
+     * {@code versionIndex * abis.length + abiIndex}: the active runtime, or null if none was found.
+     */
+    @NonNull
+    default RuntimeData[]
+    getActiveRuntimes(@NonNull Context context, @NonNull int[] majorVersions, @NonNull String[] abis) {
+        RuntimeData[] runtimes = new RuntimeData[majorVersions.length * abis.length];
+        for (int v = 0; v < majorVersions.length; ++v) {
+            for (int a = 0; a < abis.length; ++a) {
+                runtimes[v * abis.length + a] = getActiveRuntime(context, majorVersions[v], abis[a]);
+            }
+        }
+        return runtimes;
+    }
+
 }
@@ -13,10 +13,10 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * Data corresponding to a single OpenXR runtime.
@@ -30,7 +30,6 @@ public final class RuntimeData {
     private static final String soMetadataName = "org.khronos.openxr.OpenXRRuntime.SoFilename";
     private static final String versionMetadataName = "org.khronos.openxr.OpenXRRuntime.MajorVersion";
     private static final String functionsMetadataPrefix = "org.khronos.openxr.OpenXRRuntime.Functions.";
-    private static final Pattern functionNameRegex = Pattern.compile("xr[A-Z]([a-z0-9]*)([0-9A-Z]([a-z0-9]*))*");
     /**
      * The ServiceInfo used to locate the runtime, if available.
      */
@@ -76,10 +75,19 @@ public final class RuntimeData {
      * manifest with keys starting with "org.khronos.openxr.OpenXRRuntime.Functions." The remaining
      * part of the meta-data key is taken to be the key in this map (the specified function name),
      * while the value is the symbol name that should be used.
+     * <p>
+     * Unmodifiable, and iterates in function name order.
      */
     public final @NonNull
     Map<String, String> functions;
 
+    /**
+     * The same contents as {@link #functions}, as a sorted table that can be read without
+     * allocating.
+     */
+    public final @NonNull
+    FunctionTable functionTable;
+
     /**
      * The broker type returning this runtime.
      * <p>
@@ -110,7 +118,8 @@ public final class RuntimeData {
         this.nativeLibraryDir = nativeLibraryDir;
         this.soFilename = soFilename;
         this.majorVersion = majorVersion;
-        this.functions = functions;
+        this.functionTable = FunctionTable.fromMap(functions);
+        this.functions = functionTable.toMap();
         if (brokerType == null) {
             this.brokerType = BrokerContract.BrokerType.RuntimeBroker;
         } else {
@@ -140,7 +149,8 @@ public final class RuntimeData {
         this.nativeLibraryDir = nativeLibraryDir;
         this.soFilename = soFilename;
         this.majorVersion = majorVersion;
-        this.functions = functions;
+        this.functionTable = FunctionTable.fromMap(functions);
+        this.functions = functionTable.toMap();
         if (brokerType == null) {
             this.brokerType = BrokerContract.BrokerType.RuntimeBroker;
         } else {
@@ -148,17 +158,57 @@ public final class RuntimeData {
         }
     }
 
-    private static @Nullable
+    /**
+     * Check whether part of a string is a valid OpenXR function name.
+     * <p>
+     * Equivalent to matching the regex {@code xr[A-Z]([a-z0-9]*)([0-9A-Z]([a-z0-9]*))*} against
+     * the suffix of the string, which accepts "xr", an uppercase ASCII letter, and then any number
+     * of ASCII letters and digits. Does not allocate.
+     *
+     * @param str   the string to check.
+     * @param start the index where the function name starts.
+     * @return true if the suffix of str starting at start is a valid function name.
+     */
+    @VisibleForTesting
+    static boolean isValidFunctionName(@NonNull String str, int start) {
+        int length = str.length();
+        if (length - start < 3) {
+            return false;
+        }
+        if (str.charAt(start) != 'x' || str.charAt(start + 1) != 'r') {
+            return false;
+        }
+        char c = str.charAt(start + 2);
+        if (c < 'A' || c > 'Z') {
+            return false;
+        }
+        for (int i = start + 3; i < length; ++i) {
+            c = str.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the function name from a metadata key.
+     *
+     * @param key a key from the service metadata bundle.
+     * @return the function name, or null if this is not a valid functions metadata key.
+     */
+    @VisibleForTesting
+    static @Nullable
     String parseFunctionMetadataKey(@NonNull String key) {
         if (!key.startsWith(functionsMetadataPrefix)) {
             return null;
         }
-        String funcName = key.substring(functionsMetadataPrefix.length());
-        // for safety, check format of key
-        if (functionNameRegex.matcher(key).matches()) {
-            return funcName;
+        // for safety, check format of the function name before making a string of it
+        int start = functionsMetadataPrefix.length();
+        if (!isValidFunctionName(key, start)) {
+            return null;
         }
-        return null;
+        return key.substring(start);
     }
 
     /**
@@ -188,8 +238,9 @@ public final class RuntimeData {
      * @return a map of specified function name to exposed symbol, if any were specified in the
      * associated manifest meta-data. May be empty.
      */
+    @VisibleForTesting
     @NonNull
-    private static Map<String, String> getFunctionsMap(@NonNull Bundle bundle) {
+    static Map<String, String> getFunctionsMap(@NonNull Bundle bundle) {
 
         HashMap<String, String> functions = new HashMap<>();
         for (String key : bundle.keySet()) {
@@ -197,14 +248,10 @@ public final class RuntimeData {
             if (function == null) {
                 continue;
             }
-            String symbol;
-            try {
-                symbol = bundle.getString(key);
-            } catch (ClassCastException e) {
-                continue;
-            }
-            if (function != null && symbol != null && !symbol.isEmpty()) {
-                functions.putIfAbsent(function, symbol);
+            // Bundle.getString() logs a warning for non-string values, so check the type here.
+            Object symbol = bundle.get(key);
+            if (symbol instanceof String && !((String) symbol).isEmpty()) {
+                functions.putIfAbsent(function, (String) symbol);
             }
         }
         return functions;
@@ -221,6 +268,16 @@ public final class RuntimeData {
      */
     @Nullable
     public static RuntimeData fromIntentResolveInfo(@NonNull ResolveInfo resolveInfo, @NonNull String abi) {
+        BrokerTrace.beginSection(BrokerTrace.PARSE_METADATA);
+        try {
+            return parseIntentResolveInfo(resolveInfo, abi);
+        } finally {
+            BrokerTrace.endSection();
+        }
+    }
+
+    @Nullable
+    private static RuntimeData parseIntentResolveInfo(@NonNull ResolveInfo resolveInfo, @NonNull String abi) {
         ServiceInfo serviceInfo = resolveInfo.serviceInfo;
         if (serviceInfo == null) {
             return null;
@@ -0,0 +1,194 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+
+package org.khronos.openxr.runtime_broker.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of an active runtime and its function table.
+ * <p>
+ * Served by brokers through {@code openTypedAssetFile()} on the {@link BrokerContract.ActiveRuntime}
+ * URI, with the {@link BrokerContract.ActiveRuntime#DESCRIPTOR_MIME_TYPE} MIME type, as a lighter
+ * alternative to the /active and /functions cursors. All integers are big-endian 32-bit, and
+ * strings are a byte length followed by that many bytes of UTF-8:
+ * <pre>
+ * magic ("OXRD"), format version, OpenXR major version,
+ * package name, native library directory, library filename,
+ * function count, then that many (function name, symbol name) pairs.
+ * </pre>
+ */
+public final class RuntimeDescriptor {
+    /**
+     * The first 4 bytes of every descriptor: "OXRD".
+     */
+    public static final int MAGIC = 0x4F585244;
+    /**
+     * The format version written by this class, and the newest one it can read.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int INITIAL_READ_SIZE = 4096;
+    /**
+     * Limit on what {@link #read} accepts, far above any real runtime.
+     */
+    private static final int MAX_DESCRIPTOR_SIZE = 1 << 20;
+
+    // do not instantiate
+    private RuntimeDescriptor() {
+    }
+
+    /**
+     * Encode a runtime.
+     *
+     * @param runtime the runtime to encode.
+     * @return the descriptor.
+     */
+    @NonNull
+    public static byte[] encode(@NonNull RuntimeData runtime) {
+        FunctionTable functionTable = runtime.functionTable;
+        int functionCount = functionTable.size();
+        byte[][] strings = new byte[3 + 2 * functionCount][];
+        strings[0] = runtime.packageName.getBytes(StandardCharsets.UTF_8);
+        strings[1] = runtime.nativeLibraryDir.getBytes(StandardCharsets.UTF_8);
+        strings[2] = runtime.soFilename.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < functionCount; ++i) {
+            strings[3 + 2 * i] = functionTable.getFunctionName(i).getBytes(StandardCharsets.UTF_8);
+            strings[4 + 2 * i] = functionTable.getSymbolName(i).getBytes(StandardCharsets.UTF_8);
+        }
+        int size = 4 * Integer.BYTES;
+        for (byte[] string : strings) {
+            size += Integer.BYTES + string.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putInt((int) runtime.majorVersion);
+        for (int i = 0; i < 3; ++i) {
+            putString(buffer, strings[i]);
+        }
+        buffer.putInt(functionCount);
+        for (int i = 3; i < strings.length; ++i) {
+            putString(buffer, strings[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Encode a runtime to a stream.
+     *
+     * @param runtime the runtime to encode.
+     * @param out     the stream to write to. Not closed.
+     */
+    public static void write(@NonNull RuntimeData runtime, @NonNull OutputStream out) throws IOException {
+        out.write(encode(runtime));
+    }
+
+    /**
+     * Decode a descriptor.
+     * <p>
+     * Strings are decoded straight from the buffer's backing array when it has one.
+     *
+     * @param buffer     the descriptor, from its position to its limit.
+     * @param brokerType the broker the descriptor came from.
+     * @return the runtime.
+     * @throws IOException if the descriptor is malformed or of an unsupported version.
+     */
+    @NonNull
+    public static RuntimeData decode(@NonNull ByteBuffer buffer,
+                                     @Nullable BrokerContract.BrokerType brokerType) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a runtime descriptor");
+            }
+            int version = buffer.getInt();
+            if (version < 1 || version > FORMAT_VERSION) {
+                throw new IOException("Unsupported runtime descriptor version " + version);
+            }
+            int majorVersion = buffer.getInt();
+            String packageName = getString(buffer);
+            String nativeLibraryDir = getString(buffer);
+            String soFilename = getString(buffer);
+            int functionCount = buffer.getInt();
+            // Each function takes at least two lengths, so this bounds the map size.
+            if (functionCount < 0 || functionCount > buffer.remaining() / (2 * Integer.BYTES)) {
+                throw new IOException("Invalid function count " + functionCount);
+            }
+            Map<String, String> functions = new HashMap<>(functionCount * 2);
+            for (int i = 0; i < functionCount; ++i) {
+                String functionName = getString(buffer);
+                functions.put(functionName, getString(buffer));
+            }
+            return new RuntimeData(packageName, nativeLibraryDir, soFilename, majorVersion,
+                    functions, brokerType);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated runtime descriptor", e);
+        }
+    }
+
+    /**
+     * Read and decode a descriptor from a stream, until its end.
+     *
+     * @param in         the stream to read from. Not closed.
+     * @param brokerType the broker the descriptor came from.
+     * @return the runtime.
+     * @throws IOException if reading fails, or the descriptor is malformed or of an unsupported
+     *                     version.
+     */
+    @NonNull
+    public static RuntimeData read(@NonNull InputStream in,
+                                   @Nullable BrokerContract.BrokerType brokerType) throws IOException {
+        byte[] bytes = new byte[INITIAL_READ_SIZE];
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                if (length >= MAX_DESCRIPTOR_SIZE) {
+                    throw new IOException("Runtime descriptor too large");
+                }
+                byte[] larger = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, larger, 0, length);
+                bytes = larger;
+            }
+            int count = in.read(bytes, length, bytes.length - length);
+            if (count < 0) {
+                break;
+            }
+            length += count;
+        }
+        return decode(ByteBuffer.wrap(bytes, 0, length), brokerType);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] string) {
+        buffer.putInt(string.length);
+        buffer.put(string);
+    }
+
+    private static String getString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        String string;
+        if (buffer.hasArray()) {
+            string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return string;
+    }
+}
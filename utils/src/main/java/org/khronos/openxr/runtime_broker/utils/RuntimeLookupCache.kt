@@ -0,0 +1,179 @@
+// Copyright 2022, Collabora, Ltd.
+// SPDX-License-Identifier: BSL-1.0
+
+package org.khronos.openxr.runtime_broker.utils
+
+import android.content.Context
+import android.database.ContentObserver
+import android.os.SystemClock
+import androidx.annotation.VisibleForTesting
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.function.LongSupplier
+
+/**
+ * Per-process cache of active runtimes looked up with [getRuntimeFromContentProvider].
+ *
+ * Results (including "no runtime" results) are kept until the broker reports a change through
+ * [BrokerContract.makeBaseContentUri], for at most [MAX_AGE_MILLIS]. Nothing is cached for a
+ * broker whose URI cannot be observed, for instance because that broker is not installed.
+ *
+ * The broker only reports changes while its process is running: [MAX_AGE_MILLIS] bounds how
+ * long a runtime removed or updated meanwhile can be returned. A cache hit does no IPC at all,
+ * so the runtime package does not have to be visible to the app.
+ */
+object RuntimeLookupCache {
+    private const val TAG = "RuntimeLookupCache"
+
+    /**
+     * How long a result is kept at most, in milliseconds, even without a change notification.
+     */
+    const val MAX_AGE_MILLIS = 60_000L
+
+    /**
+     * Looks up a runtime that is not cached.
+     */
+    fun interface Lookup {
+        fun getRuntime(
+            type: BrokerContract.BrokerType,
+            context: Context,
+            majorVersion: Int,
+            abi: String
+        ): RuntimeData?
+    }
+
+    private data class Key(
+        val brokerType: BrokerContract.BrokerType,
+        val majorVersion: Int,
+        val abi: String
+    )
+
+    /**
+     * A cached lookup. A null runtime is a cached "no runtime" answer.
+     *
+     * @param expiresAtMillis when to look up again, on the [clock].
+     */
+    private class Entry(val runtime: RuntimeData?, val expiresAtMillis: Long)
+
+    private val entries = ConcurrentHashMap<Key, Entry>()
+
+    /**
+     * Bumped on every invalidation, so a lookup racing with one is not cached.
+     */
+    private val generation = AtomicLong()
+
+    /**
+     * Brokers whose change notifications we receive. Guarded by itself.
+     */
+    private val observedBrokers = HashSet<BrokerContract.BrokerType>()
+
+    /**
+     * Replaces the broker lookup in tests.
+     */
+    @Volatile
+    private var testLookup: Lookup? = null
+
+    @Volatile
+    private var clock = LongSupplier { SystemClock.elapsedRealtime() }
+
+    private val observer = object : ContentObserver(null) {
+        override fun onChange(selfChange: Boolean) {
+            invalidate()
+        }
+    }
+
+    /**
+     * Look up the active runtime from a runtime broker, using a cached result if possible.
+     *
+     * @param type         the broker (installable or system) to ask.
+     * @param context      a Context to use for the lookup.
+     * @param majorVersion a major version number of OpenXR.
+     * @param abi          the ABI to return data for.
+     * @return the active runtime, or null if none was found.
+     */
+    @JvmStatic
+    fun getRuntime(
+        type: BrokerContract.BrokerType,
+        context: Context,
+        majorVersion: Int,
+        abi: String
+    ): RuntimeData? {
+        val key = Key(type, majorVersion, abi)
+        val now = clock.asLong
+        entries[key]?.let { entry ->
+            if (now < entry.expiresAtMillis) {
+                return entry.runtime
+            }
+            entries.remove(key, entry)
+        }
+
+        val lookup = testLookup
+        val cacheable = lookup != null || observe(type, context)
+        val lookupGeneration = generation.get()
+        val runtime = if (lookup != null) {
+            lookup.getRuntime(type, context, majorVersion, abi)
+        } else {
+            getRuntimeFromContentProvider(type, context, majorVersion, abi)
+        }
+        if (cacheable) {
+            entries[key] = Entry(runtime, now + MAX_AGE_MILLIS)
+            // An invalidation may have cleared the entries before we added ours.
+            if (generation.get() != lookupGeneration) {
+                entries.remove(key)
+            }
+        }
+        return runtime
+    }
+
+    /**
+     * Drop all cached results.
+     *
+     * Called automatically when a broker reports a change.
+     */
+    @JvmStatic
+    fun invalidate() {
+        generation.incrementAndGet()
+        entries.clear()
+    }
+
+    /**
+     * Replace the broker lookup and the clock, or restore them with nulls. Also drops all
+     * cached results.
+     *
+     * With a lookup set, results are cached without observing any broker, as if no change
+     * notification ever arrived.
+     */
+    @VisibleForTesting
+    @JvmStatic
+    fun setForTesting(lookup: Lookup?, clock: LongSupplier?) {
+        testLookup = lookup
+        this.clock = clock ?: LongSupplier { SystemClock.elapsedRealtime() }
+        invalidate()
+    }
+
+    /**
+     * Register for change notifications from a broker, if not done already.
+     *
+     * @return true if change notifications from that broker will be received.
+     */
+    private fun observe(type: BrokerContract.BrokerType, context: Context): Boolean {
+        synchronized(observedBrokers) {
+            if (observedBrokers.contains(type)) {
+                return true
+            }
+            try {
+                context.applicationContext.contentResolver.registerContentObserver(
+                    BrokerContract.makeBaseContentUri(type),
+                    true,
+                    observer
+                )
+            } catch (e: SecurityException) {
+                // The broker is not installed or not visible to us: try again next time.
+                BrokerLog.d(TAG) { "Cannot observe $type, not caching its results: ${e.message}" }
+                return false
+            }
+            observedBrokers.add(type)
+            return true
+        }
+    }
+}